@@ -110,6 +110,7 @@ public class SongCredits {
         Thread thread = new Thread(() -> {
             Logging.debug("Performing closing actions");
             sourceManager.close();
+            Logging.debug("Async executor: " + Utils.getExecutor().getStatistics());
 
             Logging.info("Goodbye");
         }, "ShutdownThread");
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.event;
+
+import de.dereingerostete.songcredits.song.Song;
+import de.dereingerostete.songcredits.source.AudioSource;
+import lombok.Getter;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Published if the artwork of the current song was resolved after the song change.
+ * The song itself did not change, so only the cover has to be updated
+ */
+@Getter
+@ToString
+public class CoverChangedEvent extends PlaybackEvent {
+    protected final @NotNull Song song;
+
+    public CoverChangedEvent(@NotNull AudioSource source, @NotNull Song song) {
+        super(source);
+        this.song = song;
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.event;
+
+import de.dereingerostete.songcredits.util.Logging;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Delivers the {@link PlaybackEvent}s of the sources to their subscribers.
+ * Publishing never blocks: every subscriber handles its events on its own
+ * executor and drops or coalesces events if it can not keep up
+ */
+public class EventBus {
+    protected final List<Subscription<?>> subscriptions = new CopyOnWriteArrayList<>();
+
+    /**
+     * Subscribes to an event type with an own single thread executor
+     */
+    @NotNull
+    public <E extends PlaybackEvent> Subscription<E> subscribe(@NotNull Class<E> type, @NotNull String name,
+                                                               @NotNull OverflowPolicy policy, int capacity,
+                                                               @NotNull Consumer<E> handler) {
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "EventBus-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        return register(new Subscription<>(type, name, executor, policy, capacity, handler, true));
+    }
+
+    /**
+     * Subscribes to an event type with the given executor (e.g. the event dispatch thread)
+     */
+    @NotNull
+    public <E extends PlaybackEvent> Subscription<E> subscribe(@NotNull Class<E> type, @NotNull String name,
+                                                               @NotNull Executor executor,
+                                                               @NotNull OverflowPolicy policy, int capacity,
+                                                               @NotNull Consumer<E> handler) {
+        return register(new Subscription<>(type, name, executor, policy, capacity, handler, false));
+    }
+
+    @NotNull
+    private <E extends PlaybackEvent> Subscription<E> register(@NotNull Subscription<E> subscription) {
+        subscriptions.add(subscription);
+        Logging.debug("[EventBus] Registered subscriber '" + subscription.getName() + "' for " +
+                subscription.getType().getSimpleName() + " (" + subscription.getPolicy() + ")");
+        return subscription;
+    }
+
+    public void publish(@NotNull PlaybackEvent event) {
+        for (Subscription<?> subscription : subscriptions) subscription.offer(event);
+    }
+
+    public void unsubscribe(@NotNull Subscription<?> subscription) {
+        subscriptions.remove(subscription);
+        subscription.close();
+    }
+
+    @NotNull
+    public List<Subscription<?>> getSubscriptions() {
+        return List.copyOf(subscriptions);
+    }
+
+    public void close() {
+        subscriptions.forEach(Subscription::close);
+        subscriptions.clear();
+    }
+
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.event;
+
+import de.dereingerostete.songcredits.source.AudioSource;
+import de.dereingerostete.songcredits.source.SourceHealth;
+import lombok.Getter;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+
+@Getter
+@ToString
+public class HealthChangedEvent extends PlaybackEvent {
+    protected final @NotNull SourceHealth oldHealth;
+    protected final @NotNull SourceHealth health;
+    protected final long retryIn; //in ms, only set if the health is OPEN
+
+    public HealthChangedEvent(@NotNull AudioSource source, @NotNull SourceHealth oldHealth,
+                              @NotNull SourceHealth health, long retryIn) {
+        super(source);
+        this.oldHealth = oldHealth;
+        this.health = health;
+        this.retryIn = retryIn;
+    }
+
+}
@@ -0,0 +1,15 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.event;
+
+public enum OverflowPolicy {
+    DROP_OLDEST, //Removes the oldest queued event if the queue is full
+    DROP_NEWEST, //Discards the new event if the queue is full
+    COALESCE //Only keeps the latest event
+}
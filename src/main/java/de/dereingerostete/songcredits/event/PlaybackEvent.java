@@ -0,0 +1,21 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.event;
+
+import de.dereingerostete.songcredits.source.AudioSource;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.NotNull;
+
+@Getter
+@RequiredArgsConstructor
+public abstract class PlaybackEvent {
+    protected final @NotNull AudioSource source;
+
+}
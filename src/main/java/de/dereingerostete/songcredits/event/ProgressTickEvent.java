@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.event;
+
+import de.dereingerostete.songcredits.source.AudioSource;
+import lombok.Getter;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+
+@Getter
+@ToString
+public class ProgressTickEvent extends PlaybackEvent {
+    protected final int position; //in ms
+    protected final int length; //in ms
+
+    public ProgressTickEvent(@NotNull AudioSource source, int position, int length) {
+        super(source);
+        this.position = position;
+        this.length = length;
+    }
+
+}
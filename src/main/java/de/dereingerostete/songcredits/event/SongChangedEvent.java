@@ -0,0 +1,28 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.event;
+
+import de.dereingerostete.songcredits.song.Song;
+import de.dereingerostete.songcredits.source.AudioSource;
+import lombok.Getter;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+@Getter
+@ToString
+public class SongChangedEvent extends PlaybackEvent {
+    protected final @Nullable Song song; //Null if no song is played anymore
+
+    public SongChangedEvent(@NotNull AudioSource source, @Nullable Song song) {
+        super(source);
+        this.song = song;
+    }
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.event;
+
+import de.dereingerostete.songcredits.source.AudioSource;
+import de.dereingerostete.songcredits.source.PlayingState;
+import lombok.Getter;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+@Getter
+@ToString
+public class StateChangedEvent extends PlaybackEvent {
+    protected final @Nullable PlayingState oldState;
+    protected final @NotNull PlayingState state;
+
+    public StateChangedEvent(@NotNull AudioSource source, @Nullable PlayingState oldState,
+                             @NotNull PlayingState state) {
+        super(source);
+        this.oldState = oldState;
+        this.state = state;
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.event;
+
+import de.dereingerostete.songcredits.util.Logging;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A subscriber of the {@link EventBus} with its own executor and a bounded queue
+ */
+public class Subscription<E extends PlaybackEvent> {
+    protected final @Getter @NotNull Class<E> type;
+    protected final @Getter @NotNull String name;
+    protected final @NotNull Executor executor;
+    protected final @Getter @NotNull OverflowPolicy policy;
+    protected final @Getter int capacity;
+    protected final @NotNull Consumer<E> handler;
+    protected final boolean ownsExecutor;
+
+    protected final Deque<E> queue = new ArrayDeque<>();
+    protected final AtomicLong delivered = new AtomicLong();
+    protected final AtomicLong dropped = new AtomicLong();
+    protected boolean scheduled; //Guarded by queue
+    protected volatile boolean closed;
+
+    public Subscription(@NotNull Class<E> type, @NotNull String name, @NotNull Executor executor,
+                        @NotNull OverflowPolicy policy, int capacity,
+                        @NotNull Consumer<E> handler, boolean ownsExecutor) {
+        this.type = type;
+        this.name = name;
+        this.executor = executor;
+        this.policy = policy;
+        this.capacity = Math.max(capacity, 1);
+        this.handler = handler;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    public void offer(@NotNull PlaybackEvent event) {
+        if (closed || !type.isInstance(event)) return;
+        E typedEvent = type.cast(event);
+        synchronized (queue) {
+            if (policy == OverflowPolicy.COALESCE) {
+                dropped.addAndGet(queue.size());
+                queue.clear();
+            } else if (queue.size() >= capacity) {
+                dropped.incrementAndGet();
+                if (policy == OverflowPolicy.DROP_NEWEST) return;
+                queue.pollFirst();
+            }
+
+            queue.addLast(typedEvent);
+            if (scheduled) return;
+            scheduled = true;
+        }
+
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException exception) {
+            synchronized (queue) {
+                scheduled = false;
+            }
+            Logging.debug("[EventBus] Subscriber '" + name + "' rejected event", exception);
+        }
+    }
+
+    protected void drain() {
+        while (!closed) {
+            E event;
+            synchronized (queue) {
+                event = queue.pollFirst();
+                if (event == null) {
+                    scheduled = false;
+                    return;
+                }
+            }
+
+            try {
+                handler.accept(event);
+                delivered.incrementAndGet();
+            } catch (Throwable throwable) {
+                Logging.warning("[EventBus] Subscriber '" + name + "' failed to handle " +
+                        event.getClass().getSimpleName(), throwable);
+            }
+        }
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public int getQueueSize() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public void close() {
+        closed = true;
+        synchronized (queue) {
+            queue.clear();
+        }
+        if (ownsExecutor && executor instanceof ExecutorService) ((ExecutorService) executor).shutdown();
+    }
+
+}
@@ -10,12 +10,17 @@ package de.dereingerostete.songcredits.gui.component;
 
 import com.formdev.flatlaf.extras.components.FlatProgressBar;
 import de.dereingerostete.songcredits.SongCredits;
+import de.dereingerostete.songcredits.event.EventBus;
+import de.dereingerostete.songcredits.event.OverflowPolicy;
+import de.dereingerostete.songcredits.event.ProgressTickEvent;
+import de.dereingerostete.songcredits.event.StateChangedEvent;
 import de.dereingerostete.songcredits.source.AudioSource;
+import de.dereingerostete.songcredits.source.PlaybackClock;
 import de.dereingerostete.songcredits.source.PlayingState;
 import de.dereingerostete.songcredits.source.SourceException;
+import de.dereingerostete.songcredits.source.manager.SourceManager;
 import de.dereingerostete.songcredits.util.Config;
 import de.dereingerostete.songcredits.util.Logging;
-import de.dereingerostete.songcredits.util.Utils;
 import lombok.Setter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -23,20 +28,25 @@ import org.jetbrains.annotations.Nullable;
 import javax.swing.*;
 import javax.swing.border.LineBorder;
 import java.awt.*;
+import java.util.concurrent.CompletableFuture;
 
 public class MediaControlPanel extends JPanel {
     protected final FlatProgressBar progressBar;
     protected final IconButton backButton;
     protected final IconButton pauseButton;
     protected final IconButton nextButton;
+    protected final Timer progressTimer;
 
     //Config values
     protected final long clickRefreshDelay;
     protected final boolean resetProgressOnStop;
     protected final boolean stoppedAnimation;
+    protected final boolean smoothProgress;
 
     @Setter
     protected @Nullable AudioSource source;
+    @Setter
+    protected @Nullable PlaybackClock clock;
 
     public MediaControlPanel() {
         setLayout(null);
@@ -53,52 +63,37 @@ public class MediaControlPanel extends JPanel {
         backButton = new IconButton("mediaControls/skip-back", "Skip Back");
         backButton.setBounds(0, y, 36, 36);
         backButton.addActionListener(event -> {
-            try {
-                if (source != null) {
-                    if (!source.previousSong()) throw new SourceException("Source returned false");
-                    refreshSource();
-                }
-            } catch (SourceException exception) {
-                Logging.warning("Failed to skip to previous song", exception);
-                SongCredits.showError("skipping to previous song", exception, this);
-            }
+            AudioSource source = this.source;
+            if (source == null) return;
+            runCommand(source.previousSongAsync(), "Failed to skip to previous song",
+                    "skipping to previous song", this::refreshSource);
         });
         add(backButton);
 
         pauseButton = new IconButton("mediaControls/play", "Play Song");
         pauseButton.setBounds(0, y, 36, 36);
         pauseButton.addActionListener(event -> {
-            try {
-                if (source != null) {
-                    PlayingState state = source.getCurrentState();
-                    if (state == PlayingState.PLAYING) {
-                        if (!source.pause()) throw new SourceException("Source returned false");
-                        pauseButton.setIcon("mediaControls/play", "Play Song");
-                    } else {
-                        if (!source.resume()) throw new SourceException("Source returned false");
-                        pauseButton.setIcon("mediaControls/pause", "Pause Song");
-                    }
-                    refreshSource();
-                }
-            } catch (SourceException exception) {
-                Logging.warning("Failed to pause/resume song", exception);
-                SongCredits.showError("pausing/resuming song", exception, this);
-            }
+            AudioSource source = this.source;
+            if (source == null) return;
+
+            PlayingState state = source.getCurrentState();
+            boolean pause = state == PlayingState.PLAYING;
+            runCommand(pause ? source.pauseAsync() : source.resumeAsync(), "Failed to pause/resume song",
+                    "pausing/resuming song", () -> {
+                        if (pause) pauseButton.setIcon("mediaControls/play", "Play Song");
+                        else pauseButton.setIcon("mediaControls/pause", "Pause Song");
+                        refreshSource();
+                    });
         });
         add(pauseButton);
 
         nextButton = new IconButton("mediaControls/skip-forward", "Skip Forward");
         nextButton.setBounds(0, y, 36, 36);
         nextButton.addActionListener(event -> {
-            try {
-                if (source != null) {
-                    if (!source.nextSong()) throw new SourceException("Source returned false");
-                    refreshSource();
-                }
-            } catch (SourceException exception) {
-                Logging.warning("Failed to skip to next song", exception);
-                SongCredits.showError("skipping to next song", exception, this);
-            }
+            AudioSource source = this.source;
+            if (source == null) return;
+            runCommand(source.nextSongAsync(), "Failed to skip to next song",
+                    "skipping to next song", this::refreshSource);
         });
         add(nextButton);
 
@@ -111,16 +106,37 @@ public class MediaControlPanel extends JPanel {
         clickRefreshDelay = config.getLong("clickRefreshDelay", 500L);
         resetProgressOnStop = config.getBoolean("resetProgressOnStop", true);
         stoppedAnimation = config.getBoolean("animationWhileStopped", true);
+
+        //Moves the progress between the refreshes of the source
+        int frameRate = config.getInt("progressFrameRate", 60);
+        progressTimer = new Timer(1000 / Math.max(frameRate, 1), event -> {
+            PlaybackClock currentClock = clock;
+            if (currentClock != null && currentClock.isPlaying())
+                setSongProgress(currentClock.getPosition(), currentClock.getLength());
+        });
+        progressTimer.setCoalesce(true);
+        smoothProgress = frameRate > 0;
     }
 
-    private void refreshSource() {
-        Utils.runLater(() -> {
-            try {
-                if (source != null) source.refresh();
-            } catch (SourceException exception) {
-                Logging.warning("Failed to refresh source", exception);
+    //The command runs in the background, the result is handled on the event dispatch thread
+    private void runCommand(@NotNull CompletableFuture<Boolean> future, @NotNull String warning,
+                            @NotNull String action, @NotNull Runnable onSuccess) {
+        future.whenComplete((result, throwable) -> SwingUtilities.invokeLater(() -> {
+            SourceException exception = null;
+            if (throwable != null) exception = SourceException.unwrap(throwable, warning);
+            else if (!Boolean.TRUE.equals(result)) exception = new SourceException("Source returned false");
+
+            if (exception == null) onSuccess.run();
+            else {
+                Logging.warning(warning, exception);
+                SongCredits.showError(action, exception, this);
             }
-        }, clickRefreshDelay);
+        }));
+    }
+
+    private void refreshSource() {
+        SourceManager manager = SongCredits.getSourceManager();
+        if (manager != null) manager.onUserAction(clickRefreshDelay);
     }
 
     @Override
@@ -130,16 +146,30 @@ public class MediaControlPanel extends JPanel {
         nextButton.setEnabled(enabled);
         pauseButton.setEnabled(enabled);
         if (!enabled) {
+            progressTimer.stop();
             setSongProgress(0, 1);
             if (stoppedAnimation) setLoading(true);
         }
     }
 
+    public void subscribe(@NotNull EventBus eventBus) {
+        eventBus.subscribe(StateChangedEvent.class, "MediaControl-State", EventQueue::invokeLater,
+                OverflowPolicy.DROP_OLDEST, 16, event -> {
+                    if (event.getOldState() == PlayingState.STOPPED) setLoading(false);
+                    setState(event.getState());
+                });
+        eventBus.subscribe(ProgressTickEvent.class, "MediaControl-Progress", EventQueue::invokeLater,
+                OverflowPolicy.COALESCE, 1, event -> setSongProgress(event.getPosition(), event.getLength()));
+    }
+
     public void setLoading(boolean loading) {
         progressBar.setIndeterminate(loading);
     }
 
     public void setState(@NotNull PlayingState state) {
+        if (smoothProgress && state == PlayingState.PLAYING) progressTimer.start();
+        else progressTimer.stop();
+
         if (state == PlayingState.STOPPED || state == PlayingState.PAUSED) {
             pauseButton.setIcon("mediaControls/play", "Play Song");
             if (resetProgressOnStop && state == PlayingState.STOPPED) {
@@ -10,6 +10,9 @@ package de.dereingerostete.songcredits.gui.tab;
 
 import com.formdev.flatlaf.extras.components.FlatComboBox;
 import de.dereingerostete.songcredits.SongCredits;
+import de.dereingerostete.songcredits.event.EventBus;
+import de.dereingerostete.songcredits.event.HealthChangedEvent;
+import de.dereingerostete.songcredits.event.OverflowPolicy;
 import de.dereingerostete.songcredits.gui.MainGui;
 import de.dereingerostete.songcredits.gui.OutputDialoge;
 import de.dereingerostete.songcredits.gui.OutputDialoge.DefaultCloseAction;
@@ -40,6 +43,7 @@ public class GeneralPanel extends TabbedPanel {
     private final JButton defaultCoverSelect;
 
     private final JLabel statusLabel;
+    private final JLabel healthLabel;
     private final JButton startButton;
     private final GeneralConfig config;
     private boolean comboBoxFired;
@@ -211,6 +215,15 @@ public class GeneralPanel extends TabbedPanel {
         statusLabel.setFont(GuiUtil.getDefaultFont());
         statusLabel.setBounds(10, 470, 155, 25);
         add(statusLabel);
+
+        healthLabel = new JLabel();
+        healthLabel.setFont(GuiUtil.getLightFont());
+        healthLabel.setBounds(170, 470, 260, 25);
+        add(healthLabel);
+
+        EventBus eventBus = SongCredits.getSourceManager().getEventBus();
+        eventBus.subscribe(HealthChangedEvent.class, "GeneralPanel-Health", EventQueue::invokeLater,
+                OverflowPolicy.COALESCE, 1, this::setHealth);
     }
 
     private void handleRemove() {
@@ -301,6 +314,28 @@ public class GeneralPanel extends TabbedPanel {
             statusLabel.setText("SongCredits is stopped");
             startButton.setText("Start");
         }
+        healthLabel.setText("");
+    }
+
+    private void setHealth(@NotNull HealthChangedEvent event) {
+        SourceManager manager = SongCredits.getSourceManager();
+        if (!manager.isRunning()) return;
+
+        String name = event.getSource().getDisplayName();
+        switch (event.getHealth()) {
+            case DEGRADED:
+                healthLabel.setText(name + " is not responding");
+                break;
+            case OPEN:
+                long seconds = Math.max(event.getRetryIn() / 1000L, 1L);
+                healthLabel.setText(name + " is unreachable (retry in " + seconds + "s)");
+                break;
+            case HALF_OPEN:
+                healthLabel.setText("Reconnecting to " + name + "...");
+                break;
+            default:
+                healthLabel.setText("");
+        }
     }
 
     private void handeStartButton() {
@@ -122,7 +122,7 @@ public class SpotifyPanel extends TabbedPanel {
         MainGui.getMainGui().setLoading(true);
         try {
             SourceManager manager = SongCredits.getSourceManager();
-            AudioSource source = manager.getAudioSource();
+            AudioSource source = manager.getSource(SourceType.SPOTIFY);
             if (source instanceof SpotifySource) {
                 ((SpotifySource) source).login();
                 MainGui.getMainGui().setLoading(false);
@@ -147,7 +147,7 @@ public class SpotifyPanel extends TabbedPanel {
             SourceManager manager = SongCredits.getSourceManager();
             manager.stop();
 
-            AudioSource source = manager.getAudioSource();
+            AudioSource source = manager.getSource(SourceType.SPOTIFY);
             if (source != null) source.authorize();
 
             manager.start(this);
@@ -172,7 +172,7 @@ public class SpotifyPanel extends TabbedPanel {
             MainGui.getMainGui().setLoading(true);
             config.save();
             SourceManager manager = SongCredits.getSourceManager();
-            manager.updateRefreshRate(refreshRate);
+            manager.updateRefreshRate(SourceType.SPOTIFY, refreshRate);
             MainGui.getMainGui().setLoading(false);
             SongCredits.getSourceManager().restart(this);
             JOptionPane.showMessageDialog(this, "Changes were saved successfully",
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.song;
+
+import de.dereingerostete.songcredits.util.Logging;
+import lombok.Getter;
+import org.apache.commons.io.FilenameUtils;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stores cover images as files named by the hash of their content.
+ * Songs with the same cover (e.g. from the same album) share a single file.
+ * The number of files is limited, the least recently used files are deleted first
+ */
+public class ArtworkStore {
+    private static final int DEFAULT_MAX_FILES = 200;
+
+    protected final @Getter @NotNull File directory;
+    protected final @Getter int maxFiles;
+    protected final Map<String, URL> storedFiles = new ConcurrentHashMap<>();
+
+    public ArtworkStore(@NotNull File directory) {
+        this(directory, DEFAULT_MAX_FILES);
+    }
+
+    public ArtworkStore(@NotNull File directory, int maxFiles) {
+        this.directory = directory;
+        this.maxFiles = Math.max(maxFiles, 1);
+        prune(); //Removes the files left over by previous runs
+    }
+
+    /**
+     * @param bytes The content of the image
+     * @return The url of the stored file
+     */
+    @NotNull
+    public URL store(byte @NotNull [] bytes) throws IOException {
+        String hash = hash(bytes);
+        File file = new File(directory, hash + getExtension(bytes));
+        URL storedUrl = storedFiles.get(hash);
+        if (storedUrl != null && touch(file)) return storedUrl;
+
+        boolean created = false;
+        if (!touch(file)) {
+            Files.createDirectories(directory.toPath());
+            Path tempFile = Files.createTempFile(directory.toPath(), hash, ".tmp");
+            try {
+                Files.write(tempFile, bytes);
+                Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            created = true;
+        }
+
+        URL url = file.toURI().toURL();
+        storedFiles.put(hash, url);
+        if (created) prune();
+        return url;
+    }
+
+    //The modification time is used as the last access time, false if the file does not exist
+    private static boolean touch(@NotNull File file) {
+        return file.exists() && file.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Deletes the least recently used files until at most {@link #maxFiles} files are left
+     */
+    public synchronized void prune() {
+        File[] files = directory.listFiles(File::isFile);
+        if (files == null || files.length <= maxFiles) return;
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        int deleted = 0;
+        for (int i = 0; i < files.length - maxFiles; i++) {
+            File file = files[i];
+            storedFiles.remove(FilenameUtils.getBaseName(file.getName()));
+            if (file.delete()) deleted++;
+        }
+        Logging.debug("Deleted " + deleted + " unused cover(s) from " + directory.getName());
+    }
+
+    @NotNull
+    private static String hash(byte @NotNull [] bytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(bytes);
+            StringBuilder builder = new StringBuilder(hash.length * 2);
+            for (byte value : hash) builder.append(String.format("%02x", value));
+            return builder.toString();
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-256 is not supported", exception);
+        }
+    }
+
+    @NotNull
+    private static String getExtension(byte @NotNull [] bytes) {
+        if (bytes.length > 3 && (bytes[0] & 0xFF) == 0x89 && bytes[1] == 'P' && bytes[2] == 'N' && bytes[3] == 'G')
+            return ".png";
+        else if (bytes.length > 2 && (bytes[0] & 0xFF) == 0xFF && (bytes[1] & 0xFF) == 0xD8)
+            return ".jpg";
+        else return ".img";
+    }
+
+}
@@ -43,6 +43,12 @@ public class Song {
         additionalMetadata = new HashMap<>();
     }
 
+    //Copies all metadata of the given song
+    public Song(@NotNull Song song) {
+        mainMetadata = new HashMap<>(song.mainMetadata);
+        additionalMetadata = new HashMap<>(song.additionalMetadata);
+    }
+
     public void addMetadata(@NotNull Metadata metadata, @NotNull String value) {
         mainMetadata.put(metadata, value);
     }
@@ -69,6 +75,17 @@ public class Song {
         return mainMetadata.containsKey(metadata);
     }
 
+    //True if both songs only differ in their artwork
+    public boolean isSameSong(@NotNull Song song) {
+        Map<Metadata, String> metadata = new HashMap<>(mainMetadata);
+        Map<Metadata, String> otherMetadata = new HashMap<>(song.mainMetadata);
+        for (Metadata artwork : new Metadata[] {Metadata.COVER, Metadata.ARTWORK_URL}) {
+            metadata.remove(artwork);
+            otherMetadata.remove(artwork);
+        }
+        return metadata.equals(otherMetadata) && additionalMetadata.equals(song.additionalMetadata);
+    }
+
     @NotNull
     public Map<String, String> getMetadataIds() {
         Map<String, String> map = new HashMap<>(additionalMetadata);
@@ -91,7 +108,8 @@ public class Song {
                               String resolution, boolean validate) throws IOException {
         String searchTerm = track;
         if (artist != null) searchTerm = artist + " - " + track;
-        URL cachedUrl = artworkCache.getIfPresent(searchTerm + "#" + resolution);
+        String cacheKey = searchTerm + "#" + resolution;
+        URL cachedUrl = artworkCache.getIfPresent(cacheKey);
         if (cachedUrl != null) return cachedUrl;
 
         String encoded = URLEncoder.encode(searchTerm, StandardCharsets.UTF_8);
@@ -122,7 +140,7 @@ public class Song {
             URL resultUrl;
             if (artworkUrl != null) resultUrl = new URL(artworkUrl);
             else resultUrl = GuiUtil.getResourceAsURL("placeholder.png");
-            artworkCache.put(searchTerm, resultUrl);
+            artworkCache.put(cacheKey, resultUrl);
             return resultUrl;
         } catch (JSONException exception) {
             throw new IOException("Failed to resolve artwork from json", exception);
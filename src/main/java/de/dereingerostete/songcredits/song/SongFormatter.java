@@ -39,6 +39,12 @@ public class SongFormatter {
     }
 
     public void format(@NotNull Song song) throws IOException {
+        printToFile(render(song));
+    }
+
+    //Replaces the keys of the format, the text is not written
+    @NotNull
+    public String render(@NotNull Song song) {
         Map<String, String> map = song.getMetadataIds();
         String formattedString = formatText;
         for (String key : formatKeys) {
@@ -59,7 +65,12 @@ public class SongFormatter {
                 formattedString = formattedString.replace(key, value);
             }
         }
-        printToFile(formattedString);
+        return formattedString;
+    }
+
+    //Writes a text returned by render
+    public void write(@NotNull String renderedText) throws IOException {
+        printToFile(renderedText);
     }
 
     public void usePlaceholder() throws IOException {
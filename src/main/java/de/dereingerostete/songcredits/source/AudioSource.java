@@ -9,16 +9,43 @@
 package de.dereingerostete.songcredits.source;
 
 import de.dereingerostete.songcredits.song.Song;
+import de.dereingerostete.songcredits.util.Utils;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
 @Data
 public abstract class AudioSource {
     protected final @NotNull @Getter SourceType type;
     protected final @NotNull @Getter SourceConfig config;
 
+    //Mutable state, not part of equals, hashCode and toString
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private @Nullable Object songIdentity;
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    @Setter(AccessLevel.NONE)
+    private volatile long songVersion;
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    @Setter(AccessLevel.NONE)
+    private volatile long artworkVersion;
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private volatile @Nullable Runnable updateListener;
+    @EqualsAndHashCode.Exclude @ToString.Exclude
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private volatile @Nullable Consumer<Song> upcomingListener;
+
     @NotNull
     public String getDisplayName() {
         return type.getDisplayName();
@@ -37,6 +64,30 @@ public abstract class AudioSource {
 
     public abstract boolean resume() throws SourceException;
 
+    /**
+     * The asynchronous variants of the control commands do not block the caller (e.g. the GUI).
+     * By default, the blocking command is executed in the background
+     */
+    @NotNull
+    public CompletableFuture<Boolean> nextSongAsync() {
+        return runAsync(this::nextSong);
+    }
+
+    @NotNull
+    public CompletableFuture<Boolean> previousSongAsync() {
+        return runAsync(this::previousSong);
+    }
+
+    @NotNull
+    public CompletableFuture<Boolean> pauseAsync() {
+        return runAsync(this::pause);
+    }
+
+    @NotNull
+    public CompletableFuture<Boolean> resumeAsync() {
+        return runAsync(this::resume);
+    }
+
     public abstract void refresh() throws SourceException;
     public abstract int getCurrentPosition();
 
@@ -46,4 +97,71 @@ public abstract class AudioSource {
 
     public abstract void close();
 
+    /**
+     * Updates the identity of the current song. The identity should be cheap
+     * to compute (e.g. an id provided by the player) and only change with the song
+     *
+     * @return True if the identity changed and the song version was increased
+     */
+    protected boolean updateSongIdentity(@NotNull Object identity) {
+        if (identity.equals(songIdentity)) return false;
+        songIdentity = identity;
+        songVersion++;
+        return true;
+    }
+
+    /**
+     * Marks that the artwork of the current song was resolved after the song change.
+     * The song version is kept, so the song is not published again, only its cover
+     */
+    protected void updateArtwork() {
+        artworkVersion++;
+    }
+
+    /**
+     * Sets the listener, which is called if the source changed outside of a refresh
+     * (e.g. after data was resolved in the background)
+     */
+    public void setUpdateListener(@Nullable Runnable updateListener) {
+        this.updateListener = updateListener;
+    }
+
+    protected void notifyUpdate() {
+        Runnable listener = updateListener;
+        if (listener != null) listener.run();
+    }
+
+    /**
+     * Sets the listener, which is called with the next song if the source knows it in advance
+     */
+    public void setUpcomingListener(@Nullable Consumer<Song> upcomingListener) {
+        this.upcomingListener = upcomingListener;
+    }
+
+    protected void notifyUpcoming(@NotNull Song song) {
+        Consumer<Song> listener = upcomingListener;
+        if (listener != null) listener.accept(song);
+    }
+
+    @NotNull
+    protected static CompletableFuture<Boolean> runAsync(@NotNull Command command) {
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return command.execute();
+                } catch (SourceException exception) {
+                    throw new CompletionException(exception);
+                }
+            }, Utils.getExecutor());
+        } catch (RejectedExecutionException exception) {
+            return CompletableFuture.failedFuture(new SourceException("Command was rejected, too many tasks are running", exception));
+        }
+    }
+
+    protected interface Command {
+
+        boolean execute() throws SourceException;
+
+    }
+
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extrapolates the position of the current song between two refreshes of a source.
+ * Small differences between the extrapolated and the refreshed position are corrected
+ * smoothly, bigger ones are treated as a seek and applied directly
+ */
+public class PlaybackClock {
+    protected final long driftThreshold; //in ms
+    protected final long correctionTime; //in ms
+
+    //Guarded by this
+    protected @Nullable PlayingState state;
+    protected int samplePosition = -1; //in ms
+    protected int length = -1; //in ms
+    protected long sampleTime; //System.nanoTime() of the sample
+    protected long correction; //in ms
+    protected long lastDrift; //in ms
+    protected long seeks;
+
+    public PlaybackClock(long driftThreshold) {
+        this.driftThreshold = driftThreshold;
+        this.correctionTime = Math.max(driftThreshold, 1000L); //Never moves backwards while correcting
+    }
+
+    public synchronized void update(@Nullable PlayingState state, int position, int length) {
+        long now = System.nanoTime();
+        if (this.state == PlayingState.PLAYING && state == PlayingState.PLAYING
+                && samplePosition >= 0 && position >= 0 && this.length == length) {
+            long predicted = extrapolate(now);
+            lastDrift = position - predicted;
+            if (Math.abs(lastDrift) > driftThreshold) {
+                seeks++;
+                correction = 0L;
+            } else correction = predicted - position;
+        } else correction = 0L;
+
+        this.state = state;
+        this.samplePosition = position;
+        this.length = length;
+        this.sampleTime = now;
+    }
+
+    public synchronized void reset() {
+        state = null;
+        samplePosition = -1;
+        length = -1;
+        correction = 0L;
+    }
+
+    public synchronized int getPosition() {
+        return (int) extrapolate(System.nanoTime());
+    }
+
+    public synchronized int getLength() {
+        return length;
+    }
+
+    public synchronized boolean isPlaying() {
+        return state == PlayingState.PLAYING;
+    }
+
+    public synchronized long getLastDrift() {
+        return lastDrift;
+    }
+
+    public synchronized long getSeeks() {
+        return seeks;
+    }
+
+    private long extrapolate(long now) {
+        if (state != PlayingState.PLAYING || samplePosition < 0) return samplePosition;
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(now - sampleTime);
+        long remainingCorrection = correction * Math.max(correctionTime - elapsed, 0L) / correctionTime;
+
+        long position = samplePosition + elapsed + remainingCorrection;
+        if (length > 0) position = Math.min(position, length);
+        return Math.max(position, 0L);
+    }
+
+}
@@ -8,6 +8,11 @@
 
 package de.dereingerostete.songcredits.source;
 
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
 public class SourceException extends Exception {
 
     public SourceException(String message, Throwable cause) {
@@ -18,4 +23,17 @@ public class SourceException extends Exception {
         super(message);
     }
 
+    /**
+     * Unwraps the exception of a failed future
+     *
+     * @param message The message used if the cause is not a source exception
+     */
+    @NotNull
+    public static SourceException unwrap(@NotNull Throwable throwable, @NotNull String message) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null)
+            cause = cause.getCause();
+        return cause instanceof SourceException ? (SourceException) cause : new SourceException(message, cause);
+    }
+
 }
@@ -0,0 +1,16 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source;
+
+public enum SourceHealth {
+    HEALTHY, //Last refresh was successful
+    DEGRADED, //Refreshes failed but the source is still polled
+    OPEN, //Source is not polled until the backoff is over
+    HALF_OPEN //Backoff is over and the next refresh decides the health
+}
@@ -11,6 +11,8 @@ package de.dereingerostete.songcredits.source;
 import de.dereingerostete.songcredits.source.spotify.SpotifyConfig;
 import de.dereingerostete.songcredits.source.spotify.SpotifySource;
 import de.dereingerostete.songcredits.source.vlc.VLCConfig;
+import de.dereingerostete.songcredits.source.vlc.VLCRCConfig;
+import de.dereingerostete.songcredits.source.vlc.VLCRCSource;
 import de.dereingerostete.songcredits.source.vlc.VLCSource;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -21,6 +23,7 @@ import org.jetbrains.annotations.Nullable;
 @RequiredArgsConstructor
 public enum SourceType {
     VLC("VLC", "vlc", VLCSource.class, VLCConfig.class),
+    VLC_RC("VLC (RC)", "vlc_rc", VLCRCSource.class, VLCRCConfig.class),
     SPOTIFY("Spotify", "spotify", SpotifySource.class, SpotifyConfig.class);
 
     private final @NotNull String displayName;
@@ -28,6 +31,11 @@ public enum SourceType {
     private final @NotNull Class<? extends AudioSource> sourceClass;
     private final @NotNull Class<? extends SourceConfig> configClass;
 
+    //Local players are often not running, so failed connections are expected
+    public boolean isLocalPlayer() {
+        return this == VLC || this == VLC_RC;
+    }
+
     @Nullable
     public static SourceType fromName(@NotNull String displayName) {
         for (SourceType type : values()) {
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.manager;
+
+import de.dereingerostete.songcredits.source.PlayingState;
+import de.dereingerostete.songcredits.util.Config;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates the delay until the next poll of a source.
+ * While a song is playing the source is only polled sparsely.
+ * Near the expected end of the song and after activity on the source (a user action
+ * or a song or state change, e.g. made directly in the player) it is polled with the
+ * normal refresh rate, so songs skipped in a row are noticed without delay.
+ * The activity is tracked by every monitor itself, so only the active source is polled densely
+ */
+@Getter
+public class AdaptivePollingStrategy {
+    protected final long maxInterval;
+    protected final long endWindow;
+    protected final long userActionWindow;
+
+    public AdaptivePollingStrategy(@NotNull Config config) {
+        maxInterval = config.getLong("adaptiveMaxInterval", 10000L);
+        endWindow = config.getLong("adaptiveEndWindow", 3000L);
+        userActionWindow = config.getLong("userActionWindow", 5000L);
+    }
+
+    /**
+     * @param lastActivity The System.nanoTime() of the last activity on the source
+     */
+    public boolean isActive(long lastActivity) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastActivity);
+        return elapsed < userActionWindow;
+    }
+
+    /**
+     * @param state The state of the last successful refresh or null if the refresh failed
+     * @param position The current position in ms
+     * @param length The length of the current song in ms
+     * @param refreshRate The configured refresh rate of the source
+     * @param lastActivity The System.nanoTime() of the last activity on the source
+     * @return The delay in ms until the source should be polled again
+     */
+    public long nextDelay(@Nullable PlayingState state, int position, int length,
+                          long refreshRate, long lastActivity) {
+        if (state != PlayingState.PLAYING || isActive(lastActivity)) return refreshRate;
+        if (length <= 0 || position < 0) return refreshRate;
+
+        long remaining = length - position;
+        long untilWindow = remaining - endWindow;
+        if (untilWindow <= 0) {
+            //Poll right at the expected end of the song
+            return remaining > 0 ? Math.min(refreshRate, remaining) : refreshRate;
+        }
+        return Math.max(refreshRate, Math.min(maxInterval, untilWindow));
+    }
+
+}
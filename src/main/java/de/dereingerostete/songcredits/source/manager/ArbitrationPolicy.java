@@ -0,0 +1,14 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.manager;
+
+public enum ArbitrationPolicy {
+    PRIORITY, //The first playing source in the order of the monitored sources
+    RECENT //The playing source which changed its song or state most recently
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.manager;
+
+import de.dereingerostete.songcredits.source.SourceHealth;
+import de.dereingerostete.songcredits.util.Config;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the health of a source. After too many failed refreshes the source
+ * is not polled anymore until an exponential backoff (with jitter) is over
+ */
+@Getter
+public class CircuitBreaker {
+    protected final int failureThreshold;
+    protected final long baseBackoff; //in ms
+    protected final long maxBackoff; //in ms
+    protected final double jitter;
+
+    //Guarded by this
+    protected volatile @NotNull SourceHealth health = SourceHealth.HEALTHY;
+    protected int consecutiveFailures;
+    protected int consecutiveOpens;
+    protected long openUntil; //System.nanoTime()
+
+    //Statistics
+    protected volatile long totalFailures;
+    protected volatile long totalOpens;
+    protected volatile long rejectedRequests;
+
+    public CircuitBreaker(@NotNull Config config) {
+        failureThreshold = Math.max(config.getInt("failureThreshold", 3), 1);
+        baseBackoff = Math.max(config.getLong("backoffBase", 1000L), 1L);
+        maxBackoff = Math.max(config.getLong("backoffMax", 15000L), baseBackoff);
+        jitter = 0.2D;
+    }
+
+    /**
+     * @return True if the source may be refreshed now
+     */
+    public synchronized boolean allowRequest() {
+        if (health != SourceHealth.OPEN) return true;
+        if (System.nanoTime() - openUntil >= 0L) {
+            health = SourceHealth.HALF_OPEN;
+            return true;
+        }
+        rejectedRequests++;
+        return false;
+    }
+
+    public synchronized void onSuccess() {
+        health = SourceHealth.HEALTHY;
+        consecutiveFailures = 0;
+        consecutiveOpens = 0;
+    }
+
+    public synchronized void onFailure() {
+        totalFailures++;
+        consecutiveFailures++;
+        if (health == SourceHealth.HALF_OPEN || consecutiveFailures >= failureThreshold) open();
+        else health = SourceHealth.DEGRADED;
+    }
+
+    public synchronized void reset() {
+        health = SourceHealth.HEALTHY;
+        consecutiveFailures = 0;
+        consecutiveOpens = 0;
+    }
+
+    /**
+     * @return The time in ms until the source may be refreshed again
+     */
+    public synchronized long getRemainingBackoff() {
+        if (health != SourceHealth.OPEN) return 0L;
+        long remaining = openUntil - System.nanoTime();
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(remaining), 0L);
+    }
+
+    private void open() {
+        int exponent = Math.min(consecutiveOpens, 30);
+        long backoff = Math.min(baseBackoff << exponent, maxBackoff);
+        double factor = ThreadLocalRandom.current().nextDouble(1D - jitter, 1D + jitter);
+        backoff = Math.max((long) (backoff * factor), 1L);
+
+        health = SourceHealth.OPEN;
+        openUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoff);
+        consecutiveOpens++;
+        totalOpens++;
+    }
+
+}
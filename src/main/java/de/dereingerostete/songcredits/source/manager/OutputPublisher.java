@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.manager;
+
+import de.dereingerostete.songcredits.SongCredits;
+import de.dereingerostete.songcredits.event.CoverChangedEvent;
+import de.dereingerostete.songcredits.event.EventBus;
+import de.dereingerostete.songcredits.event.OverflowPolicy;
+import de.dereingerostete.songcredits.event.SongChangedEvent;
+import de.dereingerostete.songcredits.song.Song;
+import de.dereingerostete.songcredits.song.SongFormatter;
+import de.dereingerostete.songcredits.util.GeneralConfig;
+import de.dereingerostete.songcredits.util.GuiUtil;
+import de.dereingerostete.songcredits.util.Logging;
+import de.dereingerostete.songcredits.util.RejectionPolicy;
+import de.dereingerostete.songcredits.util.TaskExecutor;
+import de.dereingerostete.songcredits.util.Utils;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes the formatter outputs and the cover file on song changes.
+ * Every output file has its own {@link OutputQueue}, so writes to the same file
+ * are never reordered and a slow output (e.g. the cover download) does not delay the others.
+ * Song changes are only written after they settled, so skipped songs are not written at all.
+ * Upcoming songs can be prepared, so their outputs are written without settling or downloading
+ */
+public class OutputPublisher {
+    protected final @NotNull GeneralConfig config;
+    protected final @NotNull TaskExecutor executor;
+    protected final Map<File, OutputQueue> queues = new ConcurrentHashMap<>();
+    protected final long settleTime; //in ms
+    protected @Nullable TimerTask pendingPublish; //Guarded by this
+    protected @Nullable Song lastSong; //The song of the last song change, guarded by this
+    protected long publishId; //Guarded by this
+    protected long debouncedChanges; //Guarded by this
+    protected volatile @Nullable PreparedSong prepared;
+    protected long preparedHits; //Guarded by this
+
+    public OutputPublisher(@NotNull GeneralConfig config, @NotNull EventBus eventBus) {
+        this.config = config;
+        this.executor = new TaskExecutor("OutputWriter", 4, 64, RejectionPolicy.CALLER_RUNS, true);
+        this.settleTime = SongCredits.getConfig().getLong("songSettleTime", 750L);
+        eventBus.subscribe(SongChangedEvent.class, "Outputs", OverflowPolicy.COALESCE, 1,
+                event -> schedulePublish(event.getSong()));
+        eventBus.subscribe(CoverChangedEvent.class, "Outputs-Cover", OverflowPolicy.COALESCE, 1,
+                event -> onCoverChanged(event.getSong()));
+    }
+
+    /**
+     * Renders the outputs and downloads the cover of an upcoming song in the background
+     */
+    public void prepare(@NotNull Song song) {
+        PreparedSong current = prepared;
+        if (current != null && current.song.equals(song)) return;
+
+        executor.execute(() -> {
+            Map<SongFormatter, String> texts = new IdentityHashMap<>();
+            for (SongFormatter formatter : config.getFormatters()) texts.put(formatter, formatter.render(song));
+
+            byte[] cover = null;
+            String coverUrl = getCoverUrl(song);
+            if (coverUrl != null && config.getCoverFile() != null) {
+                try {
+                    cover = IOUtils.toByteArray(new URL(coverUrl));
+                } catch (IOException exception) {
+                    Logging.debug("Failed to download cover of upcoming song", exception);
+                }
+            }
+            prepared = new PreparedSong(song, texts, cover);
+        });
+    }
+
+    @Nullable
+    private PreparedSong getPrepared(@Nullable Song song) {
+        PreparedSong current = prepared;
+        return song != null && current != null && current.song.equals(song) ? current : null;
+    }
+
+    //Replaces the pending song change, if it has not settled yet
+    protected synchronized void schedulePublish(@Nullable Song song) {
+        if (pendingPublish != null && pendingPublish.cancel()) debouncedChanges++;
+        pendingPublish = null;
+        lastSong = song;
+        long id = ++publishId;
+
+        //A prepared song was expected to start, so it does not need to settle
+        if (settleTime <= 0L || getPrepared(song) != null) {
+            publish(song);
+            return;
+        }
+
+        pendingPublish = Utils.runLater(() -> {
+            synchronized (this) {
+                if (id != publishId) return; //Cancelled while already running
+                pendingPublish = null;
+                publish(lastSong); //The song with the latest artwork
+            }
+        }, settleTime);
+    }
+
+    //The artwork of the current song was resolved later, so only the cover is written again
+    protected synchronized void onCoverChanged(@NotNull Song song) {
+        Song current = lastSong;
+        if (current == null || !current.isSameSong(song)) return; //The song changed in the meantime
+        lastSong = song;
+        if (pendingPublish != null) return; //Not settled yet, the pending change uses the new artwork
+
+        File coverDestination = config.getCoverFile();
+        if (coverDestination != null) getQueue(coverDestination).submit(() -> updateCover(coverDestination, song), true);
+    }
+
+    protected void publish(@Nullable Song song) {
+        PreparedSong preparedSong = getPrepared(song);
+        if (preparedSong != null) {
+            prepared = null;
+            preparedHits++;
+        }
+        updateFormatters(song, preparedSong);
+
+        File coverDestination = config.getCoverFile();
+        if (coverDestination == null) return;
+        byte[] cover = preparedSong == null ? null : preparedSong.cover;
+        OutputQueue queue = getQueue(coverDestination);
+        if (cover != null) queue.submit(() -> FileUtils.writeByteArrayToFile(coverDestination, cover), true);
+        else queue.submit(() -> updateCover(coverDestination, song), true);
+    }
+
+    //Formats the song or uses the placeholders if the song is null
+    protected void updateFormatters(@Nullable Song song, @Nullable PreparedSong preparedSong) {
+        List<SongFormatter> formatters = config.getFormatters();
+        for (SongFormatter formatter : formatters) {
+            OutputQueue queue = getQueue(formatter.getFile());
+            String text = preparedSong == null ? null : preparedSong.texts.get(formatter);
+            queue.submit(() -> {
+                if (text != null) formatter.write(text);
+                else if (song != null) formatter.format(song);
+                else formatter.usePlaceholder();
+            }, !formatter.isAppend());
+        }
+    }
+
+    @NotNull
+    protected OutputQueue getQueue(@NotNull File file) {
+        return queues.computeIfAbsent(file.getAbsoluteFile(), key -> new OutputQueue(key, executor));
+    }
+
+    protected void updateCover(@NotNull File coverDestination, @Nullable Song song) throws IOException {
+        if (song == null) {
+            if (config.isDefaultPlaceholderCover()) {
+                InputStream stream = GuiUtil.getInputStream("placeholder.png");
+                FileUtils.copyInputStreamToFile(stream, coverDestination);
+            }
+        } else {
+            String urlValue = getCoverUrl(song);
+            if (urlValue != null) {
+                URL url = new URL(urlValue);
+                FileUtils.copyURLToFile(url, coverDestination);
+            } else updateCover(coverDestination, null);
+        }
+    }
+
+    @Nullable
+    protected String getCoverUrl(@NotNull Song song) {
+        String urlValue = song.getMetadata(Song.Metadata.COVER);
+        return urlValue == null ? song.getMetadata(Song.Metadata.ARTWORK_URL) : urlValue;
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (pendingPublish != null) pendingPublish.cancel();
+            publishId++;
+            Logging.debug("Song changes skipped before settling: " + debouncedChanges);
+            Logging.debug("Prepared songs published: " + preparedHits);
+        }
+
+        long written = 0L, superseded = 0L, failed = 0L;
+        for (OutputQueue queue : queues.values()) {
+            written += queue.getWritten();
+            superseded += queue.getSuperseded();
+            failed += queue.getFailed();
+        }
+
+        Logging.debug("Outputs written: " + written + ", superseded: " + superseded + ", failed: " + failed);
+        executor.shutdown();
+    }
+
+    @RequiredArgsConstructor
+    protected static class PreparedSong {
+        private final @NotNull Song song;
+        private final @NotNull Map<SongFormatter, String> texts;
+        private final byte @Nullable [] cover;
+
+    }
+
+}
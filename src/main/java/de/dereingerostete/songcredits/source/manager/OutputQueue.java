@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.manager;
+
+import de.dereingerostete.songcredits.util.Logging;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A serial write queue for a single output file.
+ * Writes are run one at a time in the order they were submitted.
+ * Pending writes are skipped if a newer write replaces the whole file
+ */
+public class OutputQueue {
+    protected final @Getter @NotNull File file;
+    protected final @NotNull Executor executor;
+    protected final Deque<Write> pending = new ArrayDeque<>();
+    protected boolean scheduled; //Guarded by pending
+
+    //Statistics
+    protected final AtomicLong written = new AtomicLong();
+    protected final AtomicLong superseded = new AtomicLong();
+    protected final AtomicLong failed = new AtomicLong();
+
+    public OutputQueue(@NotNull File file, @NotNull Executor executor) {
+        this.file = file;
+        this.executor = executor;
+    }
+
+    /**
+     * @param write The write to run
+     * @param replace True if the write replaces the whole file,
+     *                false if it appends and all pending writes have to be kept
+     */
+    public void submit(@NotNull Write write, boolean replace) {
+        synchronized (pending) {
+            if (replace) {
+                superseded.addAndGet(pending.size());
+                pending.clear();
+            }
+
+            pending.addLast(write);
+            if (scheduled) return;
+            scheduled = true;
+        }
+
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException exception) {
+            synchronized (pending) {
+                scheduled = false;
+            }
+            Logging.debug("Write to output '" + file.getName() + "' was rejected", exception);
+        }
+    }
+
+    protected void drain() {
+        while (true) {
+            Write write;
+            synchronized (pending) {
+                write = pending.pollFirst();
+                if (write == null) {
+                    scheduled = false;
+                    return;
+                }
+            }
+
+            try {
+                write.run();
+                written.incrementAndGet();
+            } catch (IOException exception) {
+                failed.incrementAndGet();
+                Logging.warning("Failed to write output '" + file.getName() + "'", exception);
+            } catch (Throwable throwable) {
+                failed.incrementAndGet();
+                Logging.warning("Unexpected error while writing output '" + file.getName() + "'", throwable);
+            }
+        }
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public long getSuperseded() {
+        return superseded.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    public interface Write {
+
+        void run() throws IOException;
+
+    }
+
+}
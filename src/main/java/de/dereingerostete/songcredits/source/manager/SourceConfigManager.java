@@ -34,8 +34,10 @@ public class SourceConfigManager {
         for (SourceType type : SourceType.values()) {
             JSONObject object = config.getSource(type.getConfigName());
             if (object == null) {
-                Logging.warning("Empty source config '" + type.getDisplayName() + "'. Skipping");
-                continue;
+                //Sources added after the config was created start with their defaults
+                Logging.debug("Empty source config '" + type.getDisplayName() + "'. Using defaults");
+                object = new JSONObject();
+                config.getJSONObject("sources").put(type.getConfigName(), object);
             }
 
             try {
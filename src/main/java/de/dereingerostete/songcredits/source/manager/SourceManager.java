@@ -11,99 +11,127 @@ package de.dereingerostete.songcredits.source.manager;
 import de.dereingerostete.songcredits.SongCredits;
 import de.dereingerostete.songcredits.gui.MainGui;
 import de.dereingerostete.songcredits.gui.component.MediaControlPanel;
+import de.dereingerostete.songcredits.event.EventBus;
+import de.dereingerostete.songcredits.event.CoverChangedEvent;
+import de.dereingerostete.songcredits.event.HealthChangedEvent;
+import de.dereingerostete.songcredits.event.ProgressTickEvent;
+import de.dereingerostete.songcredits.event.SongChangedEvent;
+import de.dereingerostete.songcredits.event.StateChangedEvent;
 import de.dereingerostete.songcredits.gui.tab.GeneralPanel;
 import de.dereingerostete.songcredits.song.Song;
-import de.dereingerostete.songcredits.song.SongFormatter;
 import de.dereingerostete.songcredits.source.*;
 import de.dereingerostete.songcredits.util.*;
 import lombok.Getter;
-import org.apache.commons.io.FileUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
 import java.lang.reflect.Constructor;
 import java.net.ConnectException;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static de.dereingerostete.songcredits.SongCredits.showError;
 
 public class SourceManager {
     protected final MediaControlPanel controlPanel = MainGui.getMediaControl();
     protected final GeneralConfig config = SongCredits.getGeneralConfig();
-    protected @Getter @Nullable AudioSource audioSource;
-    protected Timer timer;
+    protected final @Getter PollingMode pollingMode;
+    protected final @Getter AdaptivePollingStrategy pollingStrategy;
+    protected final @NotNull ScheduledExecutorService scheduler;
+    protected final @Getter EventBus eventBus;
+    protected final @Getter OutputPublisher outputPublisher;
+    protected final List<SourceMonitor> monitors = new CopyOnWriteArrayList<>();
+    protected @Getter ArbitrationPolicy arbitrationPolicy = ArbitrationPolicy.PRIORITY;
+    protected @Nullable SourceMonitor primary; //The source selected by the user
+    protected volatile @Nullable SourceMonitor active; //The published source
 
     //Values while active
-    protected PlayingState lastState;
-    protected @Getter boolean running;
-    protected Song oldSong;
+    protected volatile @Getter boolean running;
+
+    //Statistics
+    protected final AtomicLong dispatchedTicks = new AtomicLong();
+    protected final AtomicLong skippedTicks = new AtomicLong();
 
     public SourceManager() {
+        Config mainConfig = SongCredits.getConfig();
+        pollingMode = mainConfig.getEnum("pollingMode", PollingMode.ADAPTIVE, PollingMode.class);
+        pollingStrategy = new AdaptivePollingStrategy(mainConfig);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        scheduler = Executors.newScheduledThreadPool(SourceType.values().length, runnable -> {
+            Thread thread = new Thread(runnable, "SourceManager-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        eventBus = new EventBus();
+        outputPublisher = new OutputPublisher(config, eventBus);
+        controlPanel.subscribe(eventBus);
         loadSource();
     }
 
     public boolean start() throws SourceException {
-        if (audioSource == null) {
+        SourceMonitor primary = this.primary;
+        if (primary == null) {
             return false;
         }
 
-
+        AudioSource audioSource = primary.getSource();
         try {
-            lastState = null;
             audioSource.refresh();
         } catch (SourceException exception) {
             Throwable cause = exception.getCause();
-            if (!(cause instanceof ConnectException) && audioSource.getType() != SourceType.VLC)
+            if (!(cause instanceof ConnectException) && !audioSource.getType().isLocalPlayer())
                 throw exception;
         }
 
+        active = primary;
         MediaControlPanel panel = MainGui.getMediaControl();
         panel.setEnabled(true);
         panel.setLoading(false);
         panel.setSource(audioSource);
+        panel.setClock(primary.getClock());
 
         GeneralPanel generalPanel = MainGui.getGeneral();
         generalPanel.setRunningStatus(true);
 
-        SourceConfig config = audioSource.getConfig();
-        long refreshRate = config.getRefreshRate();
-        Logging.debug("Starting source manager timer with a refresh rate of " + refreshRate + "ms");
-        timer = new Timer("SourceManager");
-        timer.scheduleAtFixedRate(new TimerTask() {
-
-            @Override
-            public void run() {
-                onTick();
-            }
-
-        }, 20L, refreshRate);
-
         running = true;
+        for (SourceMonitor monitor : monitors) {
+            Logging.debug("Starting ticks of " + monitor.getSource().getDisplayName() +
+                    " with a refresh rate of " + monitor.getSource().getConfig().getRefreshRate() + "ms" +
+                    " (Mode: " + pollingMode + ")");
+            monitor.start();
+        }
         return true;
     }
 
-    public void updateRefreshRate(long refreshRate) {
-        if (!running) return;
-        Logging.debug("Reloading source manager timer with a refresh rate of " + refreshRate + "ms");
-        timer.cancel();
-        timer = new Timer("SourceManager");
-        timer.scheduleAtFixedRate(new TimerTask() {
-
-            @Override
-            public void run() {
-                onTick();
-            }
+    public void updateRefreshRate(@NotNull SourceType type, long refreshRate) {
+        SourceMonitor monitor = getMonitor(type);
+        if (!running || monitor == null) return;
+        Logging.debug("Updating refresh rate of " + type.getDisplayName() + " to " + refreshRate + "ms");
+        monitor.updateRefreshRate(refreshRate);
+    }
 
-        }, 20L, refreshRate);
+    /**
+     * Called after the user controlled the source (e.g. skipped a song).
+     * The published source will be polled densely for a short time
+     * and the next poll is moved to the given delay
+     */
+    public void onUserAction(long delay) {
+        SourceMonitor monitor = active;
+        if (monitor == null) return;
+        monitor.onUserAction();
+        monitor.getTickEngine().tickIn(delay);
     }
 
     public void start(@Nullable Component component) {
@@ -122,9 +150,20 @@ public class SourceManager {
 
     public void stop() {
         Logging.debug("Stopping manager");
-        timer.cancel();
-        lastState = null;
         running = false;
+        for (SourceMonitor monitor : monitors) {
+            monitor.stop();
+            TickEngine tickEngine = monitor.getTickEngine();
+            CircuitBreaker circuitBreaker = monitor.getCircuitBreaker();
+            Logging.debug("[" + monitor.getSource().getDisplayName() + "]" +
+                    " Ticks completed: " + tickEngine.getCompletedTicks() +
+                    ", skipped: " + tickEngine.getSkippedTicks() +
+                    ", failures: " + circuitBreaker.getTotalFailures() +
+                    ", backoffs: " + circuitBreaker.getTotalOpens() +
+                    ", rejected refreshes: " + circuitBreaker.getRejectedRequests());
+        }
+        Logging.debug("Ticks dispatched: " + dispatchedTicks.get() + ", idle: " + skippedTicks.get());
+        active = null;
 
         MediaControlPanel panel = MainGui.getMediaControl();
         panel.setEnabled(false);
@@ -134,76 +173,143 @@ public class SourceManager {
         generalPanel.setRunningStatus(false);
     }
 
-    //Called in intervals
-    protected void onTick() {
-        try {
-            if (audioSource == null) return;
-            audioSource.refresh();
+    //Called by the monitors after every successful refresh
+    protected synchronized void onRefresh(@NotNull SourceMonitor monitor, @Nullable PlayingState oldState,
+                                          boolean newSong, boolean newArtwork) {
+        if (!running) return;
+        SourceMonitor previous = active;
+        SourceMonitor selected = arbitrate(previous);
+        if (selected != previous && selected != null) {
+            activate(selected, previous);
+            return;
+        }
 
-            PlayingState state = audioSource.getCurrentState();
+        if (monitor != selected) {
+            skippedTicks.incrementAndGet();
+            return;
+        }
+
+        //Only dispatch the outputs if the song or the state really changed
+        AudioSource audioSource = monitor.getSource();
+        PlayingState state = audioSource.getCurrentState();
+        boolean stopped = state == PlayingState.STOPPED && oldState != state;
+        if (newSong || stopped) {
+            dispatchedTicks.incrementAndGet();
+            eventBus.publish(new SongChangedEvent(audioSource, newSong ? audioSource.getCurrentSong() : null));
+        } else if (newArtwork && state != PlayingState.STOPPED) {
             Song song = audioSource.getCurrentSong();
-            boolean newSong = song != null && !song.equals(oldSong);
-            if (newSong) oldSong = song;
-
-            PlayingState lastStateSave = lastState;
-            Utils.runAsync(() -> {
-                List<SongFormatter> formatters = config.getFormatters();
-                formatters.forEach(formatter -> {
-                    try {
-                        if (newSong) {
-                            formatter.format(song);
-                            updateCover(song);
-                        } else if (state == PlayingState.STOPPED && lastStateSave != state) {
-                            formatter.usePlaceholder();
-                            updateCover(null);
-                        }
-                    } catch (IOException exception) {
-                        Logging.warning("Failed to format song", exception);
-                    }
-                });
-            });
+            if (song != null) eventBus.publish(new CoverChangedEvent(audioSource, song));
+        } else skippedTicks.incrementAndGet();
 
-            if (lastState != state) {
-                if (lastState == PlayingState.STOPPED) controlPanel.setLoading(false);
-                lastState = state;
-                controlPanel.setState(state);
-            }
+        if (oldState != state) eventBus.publish(new StateChangedEvent(audioSource, oldState, state));
 
-            if (state == PlayingState.PLAYING) {
-                int totalLength = audioSource.getCurrentLength();
-                int current = audioSource.getCurrentPosition();
-                controlPanel.setSongProgress(current, totalLength);
-            }
-        } catch (SourceException exception) {
-            Throwable cause = exception.getCause();
-            if (cause instanceof ConnectException && audioSource.getType() == SourceType.VLC) return;
-            Logging.debug("Failed to refresh source", exception);
+        PlaybackClock clock = monitor.getClock();
+        if (state == PlayingState.PLAYING)
+            eventBus.publish(new ProgressTickEvent(audioSource, clock.getPosition(), clock.getLength()));
+    }
+
+    /**
+     * Selects the source that should be published.
+     * If no source is playing, the current source is kept
+     */
+    @Nullable
+    protected SourceMonitor arbitrate(@Nullable SourceMonitor current) {
+        SourceMonitor selected = null;
+        for (SourceMonitor monitor : monitors) {
+            if (!monitor.isPlaying()) continue;
+            if (selected == null) selected = monitor;
+            else if (arbitrationPolicy == ArbitrationPolicy.PRIORITY) {
+                if (monitor.getPriority() < selected.getPriority()) selected = monitor;
+            } else if (monitor.getLastChange() - selected.getLastChange() > 0) selected = monitor;
         }
+        return selected == null ? current : selected;
     }
 
-    protected void updateCover(@Nullable Song song) throws IOException {
-        File coverDestination = config.getCoverFile();
-        if (coverDestination == null) return;
-        if (song == null) {
-            if (config.isDefaultPlaceholderCover()) {
-                InputStream stream = GuiUtil.getInputStream("placeholder.png");
-                FileUtils.copyInputStreamToFile(stream, coverDestination);
-            }
-        } else {
-            String urlValue = song.getMetadata(Song.Metadata.COVER);
-            if (urlValue == null) urlValue = song.getMetadata(Song.Metadata.ARTWORK_URL);
-            if (urlValue != null) {
-                URL url = new URL(urlValue);
-                FileUtils.copyURLToFile(url, coverDestination);
-            } else updateCover(null);
+    //Publishes the complete state of the newly selected source
+    private void activate(@NotNull SourceMonitor selected, @Nullable SourceMonitor previous) {
+        active = selected;
+        AudioSource audioSource = selected.getSource();
+        PlayingState state = audioSource.getCurrentState();
+        Logging.info("Publishing source " + audioSource.getDisplayName() + " (" + arbitrationPolicy + ")");
+
+        dispatchedTicks.incrementAndGet();
+        Song song = state == PlayingState.STOPPED ? null : audioSource.getCurrentSong();
+        eventBus.publish(new SongChangedEvent(audioSource, song));
+        eventBus.publish(new StateChangedEvent(audioSource, previous == null ? null : previous.getLastState(), state));
+
+        SwingUtilities.invokeLater(() -> {
+            controlPanel.setSource(audioSource);
+            controlPanel.setClock(selected.getClock());
+        });
+    }
+
+    //Called by the monitors if the next song is known in advance
+    protected void onUpcoming(@NotNull SourceMonitor monitor, @NotNull Song song) {
+        if (monitor == active) outputPublisher.prepare(song);
+    }
+
+    //Called by the monitors after every tick
+    protected void onHealthCheck(@NotNull SourceMonitor monitor, @NotNull SourceHealth oldHealth) {
+        //A failed retry keeps the health open, but the backoff changed
+        CircuitBreaker circuitBreaker = monitor.getCircuitBreaker();
+        SourceHealth health = circuitBreaker.getHealth();
+        if (oldHealth == health && health != SourceHealth.OPEN) return;
+
+        AudioSource audioSource = monitor.getSource();
+        long retryIn = circuitBreaker.getRemainingBackoff();
+        String name = audioSource.getDisplayName();
+        if (health == SourceHealth.OPEN) {
+            String message = "Source " + name + " is unreachable. Retrying in " + retryIn + "ms";
+            if (oldHealth == SourceHealth.OPEN || oldHealth == SourceHealth.HALF_OPEN) Logging.debug(message);
+            else Logging.info(message);
+        } else if (health == SourceHealth.HALF_OPEN) Logging.debug("Source " + name + " is retried");
+        else if (health == SourceHealth.HEALTHY && (oldHealth == SourceHealth.OPEN || oldHealth == SourceHealth.HALF_OPEN))
+            Logging.info("Source " + name + " is reachable again");
+        eventBus.publish(new HealthChangedEvent(audioSource, oldHealth, health, retryIn));
+    }
+
+    /**
+     * @return The published source while running, otherwise the source selected by the user
+     */
+    @Nullable
+    public AudioSource getAudioSource() {
+        SourceMonitor monitor = active;
+        if (monitor == null) monitor = primary;
+        return monitor == null ? null : monitor.getSource();
+    }
+
+    @Nullable
+    public AudioSource getSource(@NotNull SourceType type) {
+        SourceMonitor monitor = getMonitor(type);
+        return monitor == null ? null : monitor.getSource();
+    }
+
+    @Nullable
+    protected SourceMonitor getMonitor(@NotNull SourceType type) {
+        for (SourceMonitor monitor : monitors) {
+            if (monitor.getSource().getType() == type) return monitor;
         }
+        return null;
+    }
+
+    @NotNull
+    public List<SourceMonitor> getMonitors() {
+        return Collections.unmodifiableList(monitors);
+    }
+
+    public long getDispatchedTicks() {
+        return dispatchedTicks.get();
+    }
+
+    public long getSkippedTicks() {
+        return skippedTicks.get();
     }
 
     public void close() {
-        if (audioSource != null) {
-            audioSource.close();
-            Logging.debug("Closed audio source");
-        }
+        closeSources();
+        scheduler.shutdownNow();
+        eventBus.close();
+        outputPublisher.close();
     }
 
     public void switchSource(@NotNull SourceType type, @NotNull Component component) {
@@ -211,7 +317,7 @@ public class SourceManager {
         boolean wasRunning = isRunning();
         if (wasRunning) stop();
 
-        loadSource(type);
+        loadSources(type);
         if (wasRunning) start(component);
         MainGui.getMainGui().setLoading(false);
     }
@@ -243,10 +349,46 @@ public class SourceManager {
         if (type == null) {
             Logging.warning("Invalid source found: " + active + ". Skipping");
             MainGui.getMainGui().setLoading(false);
-        } else loadSource(type);
+        } else loadSources(type);
     }
 
-    private void loadSource(@NotNull SourceType type) {
+    /**
+     * Loads the active source and all other monitored sources.
+     * The priority of the sources is their order in the config,
+     * the active source is added first if it is not monitored
+     */
+    private void loadSources(@NotNull SourceType activeType) {
+        closeSources();
+        List<SourceType> types = new ArrayList<>();
+        JSONObject sourcesObject = SongCredits.getConfig().getJSONObject("sources");
+        if (sourcesObject != null) {
+            arbitrationPolicy = sourcesObject.optEnum(ArbitrationPolicy.class, "arbitration", ArbitrationPolicy.PRIORITY);
+            JSONArray monitoredArray = sourcesObject.optJSONArray("monitored");
+            if (monitoredArray != null) monitoredArray.forEach(obj -> {
+                SourceType type = SourceType.fromConfigName(String.valueOf(obj));
+                if (type == null) Logging.warning("Invalid monitored source found: " + obj + ". Skipping");
+                else if (!types.contains(type)) types.add(type);
+            });
+        }
+        if (!types.contains(activeType)) types.add(0, activeType);
+
+        for (int i = 0; i < types.size(); i++) {
+            SourceType type = types.get(i);
+            AudioSource audioSource = loadSource(type);
+            if (audioSource == null) continue;
+
+            SourceMonitor monitor = new SourceMonitor(this, audioSource, i, scheduler);
+            monitors.add(monitor);
+            if (type == activeType) primary = monitor;
+        }
+
+        if (monitors.size() > 1) Logging.debug("Monitoring " + monitors.size() + " sources" +
+                " (Arbitration: " + arbitrationPolicy + ")");
+    }
+
+    @Nullable
+    private AudioSource loadSource(@NotNull SourceType type) {
+        AudioSource audioSource;
         try {
             SourceConfigManager manager = SongCredits.getConfigManager();
             SourceConfig sourceConfig = manager.getByType(type);
@@ -257,7 +399,7 @@ public class SourceManager {
             audioSource = sourceConstructor.newInstance(sourceConfig);
         } catch (ReflectiveOperationException exception) {
             Logging.warning("Failed to load source", exception);
-            return;
+            return null;
         }
 
         try {
@@ -266,10 +408,22 @@ public class SourceManager {
             audioSource.refresh();
         } catch (SourceException exception) {
             Throwable cause = exception.getCause();
-            if (cause instanceof ConnectException && audioSource.getType() == SourceType.VLC) return;
+            if (cause instanceof ConnectException && audioSource.getType().isLocalPlayer()) return audioSource;
             Logging.warning("Failed to authorize source", exception);
             showError("authorizing source", exception, null);
         }
+        return audioSource;
+    }
+
+    private void closeSources() {
+        for (SourceMonitor monitor : monitors) {
+            monitor.getTickEngine().shutdown();
+            monitor.getSource().close();
+            Logging.debug("Closed audio source " + monitor.getSource().getDisplayName());
+        }
+        monitors.clear();
+        primary = null;
+        active = null;
     }
 
     public void restart(@NotNull Component component) {
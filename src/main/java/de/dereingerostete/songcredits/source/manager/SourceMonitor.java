@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.manager;
+
+import de.dereingerostete.songcredits.SongCredits;
+import de.dereingerostete.songcredits.source.*;
+import de.dereingerostete.songcredits.util.Logging;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.ConnectException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Polls a single source with its own tick engine and circuit breaker.
+ * The results are reported to the {@link SourceManager}, which decides
+ * whether the source is published
+ */
+@Getter
+public class SourceMonitor {
+    protected final @NotNull SourceManager manager;
+    protected final @NotNull AudioSource source;
+    protected final int priority; //Lower values are preferred
+    protected final @NotNull TickEngine tickEngine;
+    protected final @NotNull CircuitBreaker circuitBreaker;
+    protected final @NotNull PlaybackClock clock;
+    protected volatile long refreshRate;
+
+    //Values while active
+    protected volatile @Nullable PlayingState lastState;
+    protected volatile boolean refreshFailed;
+    protected volatile long lastChange; //System.nanoTime() of the last song or state change
+    protected long lastSongVersion = -1L;
+    protected long lastArtworkVersion;
+    protected volatile long lastActivity; //System.nanoTime() of the last user action, song or state change
+
+    public SourceMonitor(@NotNull SourceManager manager, @NotNull AudioSource source,
+                         int priority, @NotNull ScheduledExecutorService scheduler) {
+        this.manager = manager;
+        this.source = source;
+        this.priority = priority;
+        this.refreshRate = source.getConfig().getRefreshRate();
+        this.tickEngine = new TickEngine("SourceMonitor-" + source.getDisplayName(),
+                this::onTick, this::nextDelay, scheduler);
+        this.circuitBreaker = new CircuitBreaker(SongCredits.getConfig());
+        this.clock = new PlaybackClock(SongCredits.getConfig().getLong("driftThreshold", 1500L));
+        long userActionWindow = manager.getPollingStrategy().getUserActionWindow();
+        this.lastActivity = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(userActionWindow);
+        source.setUpdateListener(() -> tickEngine.tickIn(0L));
+        source.setUpcomingListener(song -> manager.onUpcoming(this, song));
+    }
+
+    public void start() {
+        lastState = null;
+        refreshFailed = false;
+        refreshRate = source.getConfig().getRefreshRate();
+        circuitBreaker.reset();
+        tickEngine.start(20L);
+    }
+
+    public void stop() {
+        tickEngine.stop();
+        clock.reset();
+        lastState = null;
+    }
+
+    public void onUserAction() {
+        lastActivity = System.nanoTime();
+    }
+
+    public void updateRefreshRate(long refreshRate) {
+        this.refreshRate = refreshRate;
+        tickEngine.reschedule();
+    }
+
+    //Playing sources are preferred by the arbitration
+    public boolean isPlaying() {
+        return lastState == PlayingState.PLAYING && circuitBreaker.getHealth() != SourceHealth.OPEN;
+    }
+
+    protected long nextDelay() {
+        if (circuitBreaker.getHealth() == SourceHealth.OPEN) return Math.max(circuitBreaker.getRemainingBackoff(), 1L);
+        if (refreshFailed || manager.getPollingMode() != PollingMode.ADAPTIVE) return refreshRate;
+        int position = source.getCurrentPosition();
+        int length = source.getCurrentLength();
+        return manager.getPollingStrategy().nextDelay(lastState, position, length, refreshRate, lastActivity);
+    }
+
+    //Called in intervals
+    protected void onTick() {
+        SourceHealth oldHealth = circuitBreaker.getHealth();
+        if (!circuitBreaker.allowRequest()) return;
+
+        //The backoff is over, the probe is published as its own change (OPEN -> HALF_OPEN)
+        SourceHealth probeHealth = circuitBreaker.getHealth();
+        if (probeHealth != oldHealth) {
+            manager.onHealthCheck(this, oldHealth);
+            oldHealth = probeHealth;
+        }
+
+        try {
+            source.refresh();
+            circuitBreaker.onSuccess();
+            refreshFailed = false;
+
+            PlayingState state = source.getCurrentState();
+            clock.update(state, source.getCurrentPosition(), source.getCurrentLength());
+
+            long songVersion = source.getSongVersion();
+            boolean newSong = source.getCurrentSong() != null && songVersion != lastSongVersion;
+            if (newSong) lastSongVersion = songVersion;
+
+            //Artwork resolved for the current song is published without publishing the song again
+            long artworkVersion = source.getArtworkVersion();
+            boolean newArtwork = !newSong && artworkVersion != lastArtworkVersion && source.getCurrentSong() != null;
+            lastArtworkVersion = artworkVersion;
+
+            PlayingState oldState = lastState;
+            lastState = state;
+            if (newSong || oldState != state) {
+                //Changes made directly in the player are often followed by more changes
+                lastChange = System.nanoTime();
+                lastActivity = lastChange;
+            }
+            manager.onRefresh(this, oldState, newSong, newArtwork);
+        } catch (SourceException exception) {
+            refreshFailed = true;
+            circuitBreaker.onFailure();
+            Throwable cause = exception.getCause();
+            if (!(cause instanceof ConnectException && source.getType().isLocalPlayer()))
+                Logging.debug("Failed to refresh source " + source.getDisplayName(), exception);
+        } finally {
+            manager.onHealthCheck(this, oldHealth);
+        }
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.manager;
+
+import de.dereingerostete.songcredits.util.Logging;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Runs a tick repeatedly, never more than one at a time, even on a shared scheduler.
+ * The period is read from the supplier after every tick, so it can be changed
+ * at any time without creating a new thread. Ticks that are missed
+ * because the previous tick overran its period are skipped instead of queued.
+ * A tick requested while a tick is running is run right after it
+ */
+public class TickEngine {
+    protected final @NotNull String name;
+    protected final @NotNull Runnable tick;
+    protected final @NotNull LongSupplier periodSupplier;
+    protected final @NotNull ScheduledExecutorService scheduler;
+    protected final boolean ownsScheduler;
+    protected final AtomicLong completedTicks = new AtomicLong();
+    protected final AtomicLong skippedTicks = new AtomicLong();
+
+    //Guarded by this
+    protected ScheduledFuture<?> pendingTick;
+    protected long generation;
+    protected long lastTickStart;
+    protected boolean running;
+    protected boolean executing;
+    protected boolean retickPending; //A tick was requested while executing
+
+    public TickEngine(@NotNull String name, @NotNull Runnable tick, @NotNull LongSupplier periodSupplier) {
+        this(name, tick, periodSupplier, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        }), true);
+    }
+
+    /**
+     * Creates a tick engine running on a scheduler shared with other engines.
+     * The scheduler is not shut down with this engine
+     */
+    public TickEngine(@NotNull String name, @NotNull Runnable tick, @NotNull LongSupplier periodSupplier,
+                      @NotNull ScheduledExecutorService scheduler) {
+        this(name, tick, periodSupplier, scheduler, false);
+    }
+
+    protected TickEngine(@NotNull String name, @NotNull Runnable tick, @NotNull LongSupplier periodSupplier,
+                         @NotNull ScheduledExecutorService scheduler, boolean ownsScheduler) {
+        this.name = name;
+        this.tick = tick;
+        this.periodSupplier = periodSupplier;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+    }
+
+    public synchronized void start(long initialDelay) {
+        running = true;
+        lastTickStart = System.nanoTime();
+        schedule(initialDelay);
+    }
+
+    public synchronized void stop() {
+        running = false;
+        retickPending = false;
+        cancelPending();
+    }
+
+    /**
+     * Moves the next tick to the given delay
+     */
+    public synchronized void tickIn(long delay) {
+        if (!running) return;
+        schedule(delay);
+    }
+
+    /**
+     * Recalculates the next tick with the current period of the supplier.
+     * Should be called after the period was changed
+     */
+    public synchronized void reschedule() {
+        if (!running || executing) return; //Period is read after the current tick anyway
+        long periodNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(periodSupplier.getAsLong(), 1L));
+        long delay = lastTickStart + periodNanos - System.nanoTime();
+        schedule(Math.max(TimeUnit.NANOSECONDS.toMillis(delay), 0L));
+    }
+
+    public long getCompletedTicks() {
+        return completedTicks.get();
+    }
+
+    public long getSkippedTicks() {
+        return skippedTicks.get();
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    public void shutdown() {
+        stop();
+        if (ownsScheduler) scheduler.shutdownNow();
+    }
+
+    protected void schedule(long delay) {
+        cancelPending();
+        long currentGeneration = ++generation;
+        pendingTick = scheduler.schedule(() -> runTick(currentGeneration), delay, TimeUnit.MILLISECONDS);
+    }
+
+    protected void cancelPending() {
+        if (pendingTick != null) {
+            pendingTick.cancel(false);
+            pendingTick = null;
+        }
+    }
+
+    protected void runTick(long tickGeneration) {
+        long start = System.nanoTime();
+        synchronized (this) {
+            if (!running || tickGeneration != generation) return;
+            if (executing) {
+                //Another thread of the scheduler is still running the last tick
+                retickPending = true;
+                pendingTick = null;
+                return;
+            }
+            executing = true;
+            pendingTick = null;
+            lastTickStart = start;
+        }
+
+        try {
+            tick.run();
+        } catch (Throwable throwable) {
+            Logging.warning("[" + name + "] Tick threw an exception", throwable);
+        } finally {
+            completedTicks.incrementAndGet();
+            scheduleNext(tickGeneration, start);
+        }
+    }
+
+    //Coalesces all ticks that should have been run while the last tick was running
+    private synchronized void scheduleNext(long tickGeneration, long start) {
+        executing = false;
+        if (!running) return;
+        if (retickPending) {
+            retickPending = false;
+            schedule(0L);
+            return;
+        }
+        if (tickGeneration != generation) return; //The next tick was moved with tickIn
+
+        long periodNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(periodSupplier.getAsLong(), 1L));
+        long now = System.nanoTime();
+        long next = start + periodNanos;
+        if (now > next) {
+            long missed = (now - next) / periodNanos + 1;
+            next += missed * periodNanos;
+            skippedTicks.addAndGet(missed);
+            Logging.debug("[" + name + "] Tick overran its period. Skipped " + missed + " tick(s)");
+        }
+        schedule(TimeUnit.NANOSECONDS.toMillis(next - now));
+    }
+
+}
@@ -28,6 +28,9 @@ public class SpotifyConfig implements SourceConfig {
     protected @Nullable String clientSecret;
     protected boolean countPausedAsStopped;
     protected long refreshRate;
+    protected int requestBudget; //Maximum number of requests in a burst
+    protected double requestsPerSecond;
+    protected long queueLookahead; //Remaining time of a song in ms, when the queue is requested
 
     public SpotifyConfig(@NotNull JSONObject object, @NotNull Config config) {
         this.spotifyObject = object;
@@ -37,6 +40,9 @@ public class SpotifyConfig implements SourceConfig {
         this.clientSecret = object.optString("clientSecret", null);
         this.countPausedAsStopped = object.optBoolean("countPausedAsStopped", true);
         this.refreshRate = object.optLong("refreshRate", 2000L);
+        this.requestBudget = object.optInt("requestBudget", 10);
+        this.requestsPerSecond = object.optDouble("requestsPerSecond", 2D);
+        this.queueLookahead = object.optLong("queueLookahead", 15000L);
     }
 
     @Override
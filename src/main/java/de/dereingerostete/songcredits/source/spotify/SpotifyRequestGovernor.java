@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.spotify;
+
+import de.dereingerostete.songcredits.util.Logging;
+import org.apache.hc.core5.http.ParseException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Limits the requests to the Spotify Web API with a token bucket.
+ * If Spotify responds with 429, no request is sent until the Retry-After time is over.
+ * Control requests are preferred over background polling: polling never takes the
+ * last token and waits while control requests are waiting
+ */
+public class SpotifyRequestGovernor {
+    private static final long MAX_CONTROL_WAIT = 10_000L; //in ms
+    private static final long MAX_BACKGROUND_WAIT = 1_000L; //in ms
+    private static final long CONTROL_RECHECK = 50L; //in ms
+
+    protected final int capacity;
+    protected final double tokensPerNano;
+
+    //Guarded by this
+    protected double tokens;
+    protected long lastRefill; //System.nanoTime()
+    protected long blockedUntil; //System.nanoTime(), set by a 429 response
+    protected int waitingControls;
+
+    //Statistics
+    protected long requests;
+    protected long throttledResponses;
+    protected long rejectedRequests;
+    protected long totalWait; //in ns
+    protected long maxWait; //in ns
+
+    public SpotifyRequestGovernor(int capacity, double requestsPerSecond) {
+        this.capacity = Math.max(capacity, 1);
+        this.tokensPerNano = Math.max(requestsPerSecond, 0.01D) / TimeUnit.SECONDS.toNanos(1L);
+        this.tokens = this.capacity;
+        this.lastRefill = System.nanoTime();
+        this.blockedUntil = lastRefill;
+    }
+
+    /**
+     * Executes the request as soon as the budget allows it
+     *
+     * @throws IOException If the request could not get a token in time or failed
+     */
+    public <T> T execute(@NotNull Priority priority, @NotNull Request<T> request)
+            throws IOException, SpotifyWebApiException, ParseException {
+        acquire(priority);
+        try {
+            return request.execute();
+        } catch (TooManyRequestsException exception) {
+            onTooManyRequests(exception.getRetryAfter());
+            throw exception;
+        }
+    }
+
+    /**
+     * Starts the request as soon as the budget allows it. If a token is available,
+     * the request is started directly, otherwise it is started after the wait
+     * without blocking a thread while waiting
+     *
+     * @param request Supplies the future of the request (e.g. by calling executeAsync)
+     */
+    @NotNull
+    public <T> CompletableFuture<T> executeAsync(@NotNull Priority priority,
+                                                 @NotNull Supplier<CompletableFuture<T>> request) {
+        CompletableFuture<T> future;
+        if (tryAcquire(priority)) future = request.get();
+        else future = acquireAsync(priority).thenCompose(ignored -> request.get());
+
+        return future.whenComplete((result, throwable) -> {
+            Throwable cause = unwrap(throwable);
+            if (cause instanceof TooManyRequestsException)
+                onTooManyRequests(((TooManyRequestsException) cause).getRetryAfter());
+        });
+    }
+
+    //Returns the cause of a failed future
+    @Nullable
+    static Throwable unwrap(@Nullable Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null)
+            cause = cause.getCause();
+        return cause;
+    }
+
+    private synchronized boolean tryAcquire(@NotNull Priority priority) {
+        long now = System.nanoTime();
+        refill(now);
+        boolean control = priority == Priority.CONTROL;
+        double required = control || capacity == 1 ? 1D : 2D;
+        if (blockedUntil - now > 0L || (!control && waitingControls > 0) || tokens < required) return false;
+
+        tokens -= 1D;
+        recordWait(0L);
+        return true;
+    }
+
+    private synchronized void acquire(@NotNull Priority priority) throws IOException {
+        long start = System.nanoTime();
+        boolean control = priority == Priority.CONTROL;
+        long deadline = getDeadline(control, start);
+        if (control) waitingControls++;
+
+        try {
+            long waitTime;
+            while ((waitTime = takeToken(control, start, deadline)) > 0L)
+                TimeUnit.NANOSECONDS.timedWait(this, waitTime);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Waiting for the Spotify request budget was interrupted", exception);
+        } finally {
+            if (control) waitingControls--;
+            notifyAll();
+        }
+    }
+
+    //Waits on the timer of CompletableFuture instead of a thread of the shared executor
+    @NotNull
+    private CompletableFuture<Void> acquireAsync(@NotNull Priority priority) {
+        long start = System.nanoTime();
+        boolean control = priority == Priority.CONTROL;
+        long deadline = getDeadline(control, start);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (control) {
+            synchronized (this) {
+                waitingControls++;
+            }
+            future.whenComplete((result, throwable) -> onControlAcquired());
+        }
+
+        acquireLater(control, start, deadline, future);
+        return future;
+    }
+
+    private void acquireLater(boolean control, long start, long deadline, @NotNull CompletableFuture<Void> future) {
+        long waitTime;
+        try {
+            waitTime = takeToken(control, start, deadline);
+        } catch (IOException exception) {
+            future.completeExceptionally(exception);
+            return;
+        }
+
+        if (waitTime == 0L) future.complete(null);
+        else CompletableFuture.delayedExecutor(waitTime, TimeUnit.NANOSECONDS)
+                .execute(() -> acquireLater(control, start, deadline, future));
+    }
+
+    private synchronized void onControlAcquired() {
+        waitingControls--;
+        notifyAll();
+    }
+
+    private long getDeadline(boolean control, long start) {
+        return start + TimeUnit.MILLISECONDS.toNanos(control ? MAX_CONTROL_WAIT : MAX_BACKGROUND_WAIT);
+    }
+
+    /**
+     * Takes a token if the budget allows it
+     *
+     * @return 0 if a token was taken, otherwise the time to wait in ns
+     * @throws IOException If the wait would exceed the deadline
+     */
+    private synchronized long takeToken(boolean control, long start, long deadline) throws IOException {
+        long now = System.nanoTime();
+        refill(now);
+
+        //Background requests leave one token for control requests
+        double required = control || capacity == 1 ? 1D : 2D;
+        long waitTime; //in ns
+        if (blockedUntil - now > 0L) waitTime = blockedUntil - now;
+        else if (!control && waitingControls > 0) waitTime = TimeUnit.MILLISECONDS.toNanos(CONTROL_RECHECK);
+        else if (tokens >= required) {
+            tokens -= 1D;
+            recordWait(now - start);
+            return 0L;
+        } else waitTime = (long) Math.ceil((required - tokens) / tokensPerNano);
+
+        if (now + waitTime - deadline > 0L) {
+            rejectedRequests++;
+            throw new IOException("Spotify request budget is exhausted for another "
+                    + TimeUnit.NANOSECONDS.toMillis(waitTime) + "ms");
+        }
+        return Math.max(waitTime, 1L);
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+
+    private synchronized void onTooManyRequests(int retryAfter) {
+        throttledResponses++;
+        long blockTime = TimeUnit.SECONDS.toNanos(Math.max(retryAfter, 1));
+        long until = System.nanoTime() + blockTime;
+        if (until - blockedUntil > 0L) blockedUntil = until;
+        tokens = 0D;
+        Logging.warning("Spotify rate limit was reached. Retrying after " + Math.max(retryAfter, 1) + "s");
+    }
+
+    private void recordWait(long wait) {
+        requests++;
+        totalWait += wait;
+        maxWait = Math.max(maxWait, wait);
+    }
+
+    public synchronized double getAvailableTokens() {
+        refill(System.nanoTime());
+        return tokens;
+    }
+
+    /**
+     * @return The time in ms until requests are allowed again after a 429 response
+     */
+    public synchronized long getRemainingBlockTime() {
+        long remaining = blockedUntil - System.nanoTime();
+        return Math.max(TimeUnit.NANOSECONDS.toMillis(remaining), 0L);
+    }
+
+    public synchronized double getAverageWaitMillis() {
+        return requests == 0 ? 0D : totalWait / (requests * 1_000_000D);
+    }
+
+    @NotNull
+    public synchronized String getStatistics() {
+        return String.format("requests: %d, throttled: %d, rejected: %d, tokens: %.1f/%d, " +
+                        "avg. wait: %.2fms, max. wait: %.2fms", requests, throttledResponses, rejectedRequests,
+                getAvailableTokens(), capacity, getAverageWaitMillis(), maxWait / 1_000_000D);
+    }
+
+    public enum Priority {
+        CONTROL, //Requests triggered by the user, e.g. skipping a song
+        BACKGROUND //Polling and lookups
+    }
+
+    public interface Request<T> {
+
+        T execute() throws IOException, SpotifyWebApiException, ParseException;
+
+    }
+
+}
@@ -9,26 +9,28 @@
 package de.dereingerostete.songcredits.source.spotify;
 
 import de.dereingerostete.songcredits.SongCredits;
-import de.dereingerostete.songcredits.gui.MainGui;
-import de.dereingerostete.songcredits.gui.tab.SpotifyPanel;
 import de.dereingerostete.songcredits.song.Song;
 import de.dereingerostete.songcredits.song.Song.Metadata;
 import de.dereingerostete.songcredits.source.AudioSource;
 import de.dereingerostete.songcredits.source.PlayingState;
 import de.dereingerostete.songcredits.source.SourceException;
 import de.dereingerostete.songcredits.source.SourceType;
+import de.dereingerostete.songcredits.source.spotify.SpotifyRequestGovernor.Priority;
 import de.dereingerostete.songcredits.util.Config;
 import de.dereingerostete.songcredits.util.Logging;
 import de.dereingerostete.songcredits.util.Utils;
+import lombok.RequiredArgsConstructor;
 import org.apache.hc.core5.http.ParseException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import se.michaelthelin.spotify.SpotifyApi;
 import se.michaelthelin.spotify.SpotifyHttpManager;
 import se.michaelthelin.spotify.enums.Action;
 import se.michaelthelin.spotify.enums.AuthorizationScope;
-import se.michaelthelin.spotify.exceptions.SpotifyWebApiException;
+import se.michaelthelin.spotify.exceptions.detailed.TooManyRequestsException;
+import se.michaelthelin.spotify.exceptions.detailed.UnauthorizedException;
 import se.michaelthelin.spotify.model_objects.IPlaylistItem;
 import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
 import se.michaelthelin.spotify.model_objects.miscellaneous.CurrentlyPlaying;
@@ -39,34 +41,64 @@ import se.michaelthelin.spotify.model_objects.specification.Track;
 
 import java.io.IOException;
 import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
 import java.util.EnumSet;
 import java.util.Objects;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 public class SpotifySource extends AudioSource {
+    private static final URI QUEUE_URI = URI.create("https://api.spotify.com/v1/me/player/queue");
     protected final boolean countPausedAsStopped;
+    protected final long queueLookahead; //in ms
     protected final SpotifyApi spotifyApi;
-    protected Timer timer;
-    protected boolean timerRunning;
-
-    private Song currentSong;
-    private PlayingState currentState;
-    private int totalLength = -1; //in ms
-    private int currentPosition = -1; //in ms
+    protected final SpotifyRequestGovernor governor;
+    protected final HttpClient queueClient;
+    protected final SpotifyTokenManager tokenManager;
+
+    private volatile Song currentSong;
+    private volatile PlayingState currentState;
+    private volatile int totalLength = -1; //in ms
+    private volatile int currentPosition = -1; //in ms
+
+    //The song is only built again if the id of the item changes, guarded by this
+    private @Nullable String lastSongId;
+    private @Nullable String lastSongKey; //Changes if the song was completed in the background
+    private @Nullable Song lastSong;
+
+    //The next song in the queue, requested once per song when it nears its end
+    private volatile @Nullable String lookaheadId;
+    private volatile @Nullable UpcomingSong upcomingSong;
+    private volatile boolean queueUnavailable;
+
+    //Statistics
+    protected final AtomicLong playingRequests = new AtomicLong();
+    protected final AtomicLong trackRequests = new AtomicLong();
+    protected final AtomicLong queueRequests = new AtomicLong();
+    protected final AtomicLong upcomingHits = new AtomicLong();
 
     public SpotifySource(@NotNull SpotifyConfig config) throws SourceException {
         super(SourceType.SPOTIFY, config);
         if (!config.isComplete()) throw new SourceException("Config is incomplete");
 
         this.countPausedAsStopped = config.isCountPausedAsStopped();
-        timer = new Timer("SpotifyAuthRefresh", true);
+        this.queueLookahead = config.getQueueLookahead();
+        this.queueClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10L)).build();
+        governor = new SpotifyRequestGovernor(config.getRequestBudget(), config.getRequestsPerSecond());
         spotifyApi = new SpotifyApi.Builder()
                 .setClientId(config.getClientId())
                 .setClientSecret(config.getClientSecret())
                 .setRedirectUri(SpotifyHttpManager.makeUri("http://localhost/"))
                 .build();
+        tokenManager = new SpotifyTokenManager(spotifyApi, governor);
     }
 
     @Nullable
@@ -83,75 +115,212 @@ public class SpotifySource extends AudioSource {
 
     @Override
     public void refresh() throws SourceException {
-        try {
-            CurrentlyPlaying playing = spotifyApi.getUsersCurrentlyPlayingTrack().build().execute();
-            if (playing == null) { //Possible causes: Spotify is not open or Spotify was paused for too long
-                //Logging.debug("Spotify: Response was null. Changing state to stopped");
-                currentState = PlayingState.STOPPED;
-                currentSong = null;
-                return;
-            }
+        playingRequests.incrementAndGet();
+        CurrentlyPlaying playing = await(request(Priority.BACKGROUND,
+                () -> spotifyApi.getUsersCurrentlyPlayingTrack().build().executeAsync()),
+                "Failed to get current spotify playing track");
+        if (playing == null) { //Possible causes: Spotify is not open or Spotify was paused for too long
+            //Logging.debug("Spotify: Response was null. Changing state to stopped");
+            currentState = PlayingState.STOPPED;
+            currentSong = null;
+            return;
+        }
 
-            if (playing.getIs_playing() && playing.getItem() != null) {
-                //Logging.debug("Spotify: Updating song and duration");
-                IPlaylistItem item = playing.getItem();
-                currentSong = getTrackById(item.getId());
-                totalLength = item.getDurationMs();
-                //Logging.debug("Spotify: Set song to: " + currentSong);
-            } else {
-                //Logging.debug("Spotify: Item is null. Clearing song");
-                currentSong = null;
+        if (playing.getIs_playing() && playing.getItem() != null) {
+            //Logging.debug("Spotify: Updating song and duration");
+            IPlaylistItem item = playing.getItem();
+            synchronized (this) {
+                currentSong = getSong(item);
+                updateSongIdentity(Objects.requireNonNull(lastSongKey));
             }
+            totalLength = item.getDurationMs();
+            lookahead(item.getId(), playing.getProgress_ms(), item.getDurationMs());
+            //Logging.debug("Spotify: Set song to: " + currentSong);
+        } else {
+            //Logging.debug("Spotify: Item is null. Clearing song");
+            currentSong = null;
+        }
 
-            currentPosition = playing.getProgress_ms();
-            if (playing.getIs_playing()) currentState = PlayingState.PLAYING;
-            else if (countPausedAsStopped) currentState = PlayingState.STOPPED;
-            else {
-                //Is pausing is currently disabled the song was paused
-                EnumSet<Action> actions = playing.getActions().getDisallows().getDisallowedActions();
-                currentState = actions.contains(Action.PAUSING) ? PlayingState.PAUSED : PlayingState.STOPPED;
-            }
-        } catch (IOException | SpotifyWebApiException | ParseException exception) {
-            throw new SourceException("Failed to get current spotify playing track", exception);
+        currentPosition = playing.getProgress_ms();
+        if (playing.getIs_playing()) currentState = PlayingState.PLAYING;
+        else if (countPausedAsStopped) currentState = PlayingState.STOPPED;
+        else {
+            //Is pausing is currently disabled the song was paused
+            EnumSet<Action> actions = playing.getActions().getDisallows().getDisallowedActions();
+            currentState = actions.contains(Action.PAUSING) ? PlayingState.PAUSED : PlayingState.STOPPED;
         }
     }
 
+    /**
+     * Builds the song from the track of the currently playing response.
+     * If the response misses a field, the song is published with the known fields
+     * and the track is requested in the background
+     */
     @NotNull
-    private Song getTrackById(@NotNull String id) throws SourceException {
-        try {
-            Track track = spotifyApi.getTrack(id).build().execute();
-            Song song = new Song();
-            song.addMetadata(Metadata.TITLE, track.getName());
-
-            String[] artists = Stream.of(track.getArtists())
-                    .map(ArtistSimplified::getName).toArray(String[]::new);
-            String artist = Utils.toString(artists, ", ");
-            song.addMetadata(Metadata.ARTIST, artist);
-
-            AlbumSimplified album = track.getAlbum();
-            addDateMetadata(song, album.getReleaseDate());
-            song.addMetadata(Metadata.ALBUM, album.getName());
-
-            Image image = getBiggestImage(album);
-            if (image != null) {
-                String imageUrl = image.getUrl();
-                song.addMetadata(Metadata.ARTWORK_URL, imageUrl);
-                song.addMetadata(Metadata.COVER, imageUrl);
+    private synchronized Song getSong(@NotNull IPlaylistItem item) throws SourceException {
+        String id = item.getId();
+        Song song = lastSong;
+        if (song != null && id.equals(lastSongId)) return song;
+
+        UpcomingSong upcoming = upcomingSong;
+        if (upcoming != null && upcoming.id.equals(id)) {
+            song = upcoming.song;
+            upcomingHits.incrementAndGet();
+        } else if (item instanceof Track && isComplete((Track) item)) {
+            try {
+                song = createSong((Track) item);
+            } catch (ParseException exception) {
+                throw new SourceException("Failed to parse song", exception);
             }
+        } else {
+            song = createBasicSong(item);
+            completeSongAsync(id);
+        }
+        lastSong = song;
+        lastSongId = id;
+        lastSongKey = id;
+        return song;
+    }
+
+    private boolean isComplete(@NotNull Track track) {
+        AlbumSimplified album = track.getAlbum();
+        return track.getName() != null && track.getArtists() != null && album != null
+                && album.getName() != null && album.getReleaseDate() != null && album.getImages() != null
+                && track.getDurationMs() != null && track.getIsExplicit() != null
+                && track.getDiscNumber() != null && track.getTrackNumber() != null;
+    }
+
+    //Requests the track and replaces the song if it is still playing
+    private void completeSongAsync(@NotNull String id) {
+        trackRequests.incrementAndGet();
+        request(Priority.BACKGROUND, () -> spotifyApi.getTrack(id).build().executeAsync())
+                .thenAccept(track -> {
+                    synchronized (this) {
+                        if (!id.equals(lastSongId)) return; //The song changed in the meantime
+                        try {
+                            lastSong = createSong(track);
+                        } catch (ParseException exception) {
+                            Logging.debug("Failed to parse song " + id, exception);
+                            return;
+                        }
+
+                        lastSongKey = id + "#track";
+                        if (currentSong == null) return;
+                        currentSong = lastSong;
+                        updateSongIdentity(lastSongKey);
+                    }
+                    notifyUpdate();
+                }).exceptionally(throwable -> {
+                    Logging.debug("Failed to get song by id", throwable);
+                    return null;
+                });
+    }
+
+    //Requests the next song of the queue once, when the current song nears its end
+    private void lookahead(@NotNull String id, int position, int length) {
+        if (queueLookahead <= 0L || queueUnavailable || length <= 0 || length - position > queueLookahead) return;
+        if (id.equals(lookaheadId)) return;
+        lookaheadId = id;
+
+        queueRequests.incrementAndGet();
+        request(Priority.BACKGROUND, this::getNextQueuedTrack).thenAccept(track -> {
+            if (track == null) return;
+            try {
+                Song song = createSong(track);
+                upcomingSong = new UpcomingSong(track.getId(), song);
+                notifyUpcoming(song);
+                Logging.debug("Prepared next Spotify song '" + track.getName() + "'");
+            } catch (ParseException exception) {
+                Logging.debug("Failed to parse next song", exception);
+            }
+        }).exceptionally(throwable -> {
+            Logging.debug("Failed to get Spotify queue", throwable);
+            return null;
+        });
+    }
+
+    /**
+     * Requests the first track of the queue. The library does not support
+     * the queue endpoint, so it is requested directly with the access token
+     */
+    @NotNull
+    private CompletableFuture<Track> getNextQueuedTrack() {
+        HttpRequest request = HttpRequest.newBuilder(QUEUE_URI)
+                .header("Authorization", "Bearer " + spotifyApi.getAccessToken())
+                .timeout(Duration.ofSeconds(10L))
+                .GET().build();
+
+        return queueClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).thenApply(response -> {
+            int statusCode = response.statusCode();
+            if (statusCode == 429) {
+                int retryAfter = response.headers().firstValue("Retry-After")
+                        .map(SpotifySource::parseRetryAfter).orElse(1);
+                throw new CompletionException(new TooManyRequestsException("Too many requests", retryAfter));
+            } else if (statusCode == 401) {
+                throw new CompletionException(new UnauthorizedException("The access token was rejected"));
+            } else if (statusCode == 403) {
+                //Refresh tokens from older versions miss the scope to read the queue
+                queueUnavailable = true;
+                Logging.warning("Spotify queue is not accessible. Log in again to prepare upcoming songs");
+                throw new CompletionException(new IOException("Spotify responded with status code " + statusCode));
+            } else if (statusCode != 200)
+                throw new CompletionException(new IOException("Spotify responded with status code " + statusCode));
+
+            JSONArray queue = new JSONObject(response.body()).optJSONArray("queue");
+            JSONObject next = queue == null ? null : queue.optJSONObject(0);
+            if (next == null || !"track".equals(next.optString("type"))) return null;
+            return new Track.JsonUtil().createModelObject(next.toString());
+        });
+    }
 
-            int duration = track.getDurationMs() / 1000;
-            song.addMetadata(Metadata.DURATION, String.valueOf(duration));
+    private static int parseRetryAfter(@NotNull String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException exception) {
+            return 1;
+        }
+    }
 
-            boolean explicit = track.getIsExplicit();
-            song.addMetadata(Metadata.EXPLICIT, explicit ? "Yes" : "No");
+    @NotNull
+    private Song createBasicSong(@NotNull IPlaylistItem item) {
+        Song song = new Song();
+        song.addMetadata(Metadata.TITLE, item.getName());
+        song.addMetadata(Metadata.DURATION, String.valueOf(item.getDurationMs() / 1000));
+        song.addMetadata(Metadata.FILE_NAME, item.getName());
+        return song;
+    }
 
-            song.addMetadata(Metadata.DISC_NUMBER, track.getDiscNumber().toString());
-            song.addMetadata(Metadata.TRACK_NUMBER, track.getTrackNumber().toString());
-            song.addMetadata(Metadata.FILE_NAME, track.getName());
-            return song;
-        } catch (IOException | SpotifyWebApiException | ParseException exception) {
-            throw new SourceException("Failed to get song by id", exception);
+    @NotNull
+    private Song createSong(@NotNull Track track) throws ParseException {
+        Song song = new Song();
+        song.addMetadata(Metadata.TITLE, track.getName());
+
+        String[] artists = Stream.of(track.getArtists())
+                .map(ArtistSimplified::getName).toArray(String[]::new);
+        String artist = Utils.toString(artists, ", ");
+        song.addMetadata(Metadata.ARTIST, artist);
+
+        AlbumSimplified album = track.getAlbum();
+        addDateMetadata(song, album.getReleaseDate());
+        song.addMetadata(Metadata.ALBUM, album.getName());
+
+        Image image = getBiggestImage(album);
+        if (image != null) {
+            String imageUrl = image.getUrl();
+            song.addMetadata(Metadata.ARTWORK_URL, imageUrl);
+            song.addMetadata(Metadata.COVER, imageUrl);
         }
+
+        int duration = track.getDurationMs() / 1000;
+        song.addMetadata(Metadata.DURATION, String.valueOf(duration));
+
+        boolean explicit = track.getIsExplicit();
+        song.addMetadata(Metadata.EXPLICIT, explicit ? "Yes" : "No");
+
+        song.addMetadata(Metadata.DISC_NUMBER, track.getDiscNumber().toString());
+        song.addMetadata(Metadata.TRACK_NUMBER, track.getTrackNumber().toString());
+        song.addMetadata(Metadata.FILE_NAME, track.getName());
+        return song;
     }
 
     private void addDateMetadata(@NotNull Song song, @NotNull String releaseDate) throws ParseException {
@@ -183,47 +352,92 @@ public class SpotifySource extends AudioSource {
         return biggestImage;
     }
 
+    @NotNull
+    @Override
+    public CompletableFuture<Boolean> nextSongAsync() {
+        return control(() -> spotifyApi.skipUsersPlaybackToNextTrack().build().executeAsync(),
+                "Failed to skip to next song", true);
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Boolean> previousSongAsync() {
+        return control(() -> spotifyApi.skipUsersPlaybackToPreviousTrack().build().executeAsync(),
+                "Failed to return to previous song", true);
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Boolean> pauseAsync() {
+        return control(() -> spotifyApi.pauseUsersPlayback().build().executeAsync(),
+                "Failed to pause the current song", false);
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Boolean> resumeAsync() {
+        return control(() -> spotifyApi.startResumeUsersPlayback().build().executeAsync(),
+                "Failed to resume the current song", false);
+    }
+
     @Override
     public boolean nextSong() throws SourceException {
-        try {
-            spotifyApi.skipUsersPlaybackToNextTrack().build().execute();
-            currentPosition = 0;
-            totalLength = 0;
-            return true;
-        } catch (IOException | SpotifyWebApiException | ParseException exception) {
-            throw new SourceException("Failed to skip to next song", exception);
-        }
+        return await(nextSongAsync(), "Failed to skip to next song");
     }
 
     @Override
     public boolean previousSong() throws SourceException {
-        try {
-            spotifyApi.skipUsersPlaybackToPreviousTrack().build().execute();
-            currentPosition = 0;
-            totalLength = 0;
-            return true;
-        } catch (IOException | SpotifyWebApiException | ParseException exception) {
-            throw new SourceException("Failed to return to previous song", exception);
-        }
+        return await(previousSongAsync(), "Failed to return to previous song");
     }
 
     @Override
     public boolean pause() throws SourceException {
-        try {
-            spotifyApi.pauseUsersPlayback().build().execute();
-            return true;
-        } catch (IOException | SpotifyWebApiException | ParseException exception) {
-            throw new SourceException("Failed to pause the current song", exception);
-        }
+        return await(pauseAsync(), "Failed to pause the current song");
     }
 
     @Override
     public boolean resume() throws SourceException {
-        try {
-            spotifyApi.startResumeUsersPlayback().build().execute();
+        return await(resumeAsync(), "Failed to resume the current song");
+    }
+
+    //Control requests are preferred by the governor and fail with a source exception
+    @NotNull
+    private <T> CompletableFuture<Boolean> control(@NotNull Supplier<CompletableFuture<T>> request,
+                                                   @NotNull String message, boolean resetProgress) {
+        return request(Priority.CONTROL, request).handle((result, throwable) -> {
+            if (throwable != null) throw new CompletionException(SourceException.unwrap(throwable, message));
+            if (resetProgress) {
+                currentPosition = 0;
+                totalLength = 0;
+            }
             return true;
-        } catch (IOException | SpotifyWebApiException | ParseException exception) {
-            throw new SourceException("Failed to resume the current song", exception);
+        });
+    }
+
+    /**
+     * Sends the request with a valid access token. If Spotify rejects the token,
+     * the request is sent once more after the token was refreshed
+     */
+    @NotNull
+    private <T> CompletableFuture<T> request(@NotNull Priority priority, @NotNull Supplier<CompletableFuture<T>> request) {
+        return tokenManager.getAccessToken()
+                .thenCompose(token -> governor.executeAsync(priority, request))
+                .handle((result, throwable) -> {
+                    if (throwable == null) return CompletableFuture.completedFuture(result);
+                    if (!(SpotifyRequestGovernor.unwrap(throwable) instanceof UnauthorizedException))
+                        return CompletableFuture.<T>failedFuture(throwable);
+
+                    tokenManager.invalidate();
+                    return tokenManager.refresh().thenCompose(token -> governor.executeAsync(priority, request));
+                }).thenCompose(Function.identity());
+    }
+
+    //Waits for the future, used by the blocking methods
+    private static <T> T await(@NotNull CompletableFuture<T> future, @NotNull String message) throws SourceException {
+        try {
+            return future.join();
+        } catch (CompletionException | CancellationException exception) {
+            throw SourceException.unwrap(exception, message);
         }
     }
 
@@ -237,9 +451,24 @@ public class SpotifySource extends AudioSource {
         return currentPosition;
     }
 
+    @NotNull
+    public SpotifyRequestGovernor getGovernor() {
+        return governor;
+    }
+
+    @NotNull
+    public String getStatistics() {
+        return String.format("currently playing requests: %d, track requests: %d, " +
+                        "queue requests: %d, prepared songs played: %d", playingRequests.get(),
+                trackRequests.get(), queueRequests.get(), upcomingHits.get());
+    }
+
     @Override
     public void close() {
-        timer.cancel();
+        tokenManager.close();
+        Logging.debug("Spotify " + getStatistics());
+        Logging.debug("Spotify governor " + governor.getStatistics());
+        Logging.debug("Spotify tokens " + tokenManager.getStatistics());
     }
 
     @Override
@@ -259,20 +488,12 @@ public class SpotifySource extends AudioSource {
             if (refreshToken != null) {
                 spotifyApi.setRefreshToken(refreshToken);
 
-                long currentTime = System.currentTimeMillis();
+                //Requests wait for the refresh, if the saved token expired
                 long expireDate = object.optLong("accessTokenExpire", -1);
-                if (expireDate <= currentTime) {
-                    refreshAuthorization();
-                    return;
-                }
-
                 String accessToken = object.optString("accessToken", null);
-                if (accessToken != null) {
-                    AuthorizationCodeCredentials.Builder builder = new AuthorizationCodeCredentials.Builder();
-                    builder.setAccessToken(accessToken);
-                    builder.setExpiresIn((int) ((expireDate - currentTime) / 1000));
-                    refreshAuthorization(builder.build());
-                } else refreshAuthorization();
+                if (accessToken != null && expireDate > System.currentTimeMillis())
+                    tokenManager.setAccessToken(accessToken, expireDate);
+                else tokenManager.refresh();
             } else {
                 refreshToken = login();
                 object.put("refreshToken", refreshToken);
@@ -287,7 +508,8 @@ public class SpotifySource extends AudioSource {
     public String login() throws Exception {
         URI uri = spotifyApi.authorizationCodeUri()
                 .scope(AuthorizationScope.USER_MODIFY_PLAYBACK_STATE,
-                        AuthorizationScope.USER_READ_CURRENTLY_PLAYING)
+                        AuthorizationScope.USER_READ_CURRENTLY_PLAYING,
+                        AuthorizationScope.USER_READ_PLAYBACK_STATE)
                 .build().execute();
 
         SpotifyAuth auth = new SpotifyAuth(uri);
@@ -297,65 +519,17 @@ public class SpotifySource extends AudioSource {
         if (code == null) throw new IOException("Code could not be extracted from uri");
         Logging.debug("User logged in with Spotify");
 
-        AuthorizationCodeCredentials credentials = spotifyApi.authorizationCode(code).build().execute();
-        spotifyApi.setRefreshToken(credentials.getRefreshToken());
-        refreshAuthorization(credentials);
+        AuthorizationCodeCredentials credentials = governor.execute(Priority.CONTROL,
+                () -> spotifyApi.authorizationCode(code).build().execute());
+        tokenManager.setCredentials(credentials, true);
         return credentials.getRefreshToken();
     }
 
-    private void refreshAuthorization() {
-        try {
-            AuthorizationCodeCredentials credentials = spotifyApi.authorizationCodeRefresh().build().execute();
-            refreshAuthorization(credentials);
-        } catch (ParseException | IOException | SpotifyWebApiException exception) {
-            Logging.warning("Failed to refresh spotify auth", exception);
-            if (timerRunning) {
-                timer.cancel();
-                timer = new Timer("SpotifyAuthRefresh", true);
-            }
-            timerRunning = true;
-            timer.schedule(new TimerTask() {
-
-                @Override
-                public void run() {
-                    refreshAuthorization();
-                }
-
-            }, 5000L);
-        }
-    }
-
-    private void refreshAuthorization(@NotNull AuthorizationCodeCredentials credentials) {
-        String accessToken = credentials.getAccessToken();
-        spotifyApi.setAccessToken(accessToken);
-        SpotifyPanel panel = MainGui.getMainGui().getSpotifyPanel();
-        if (panel != null) panel.setAccessToken(accessToken);
+    @RequiredArgsConstructor
+    private static class UpcomingSong {
+        private final @NotNull String id;
+        private final @NotNull Song song;
 
-        long expiresIn = Math.max(credentials.getExpiresIn() - 5, 1) * 1000L;
-        if (timerRunning) {
-            timer.cancel();
-            timer = new Timer("SpotifyAuthRefresh", true);
-        }
-        timerRunning = true;
-        timer.schedule(new TimerTask() {
-
-            @Override
-            public void run() {
-                refreshAuthorization();
-            }
-
-        }, expiresIn);
-
-        Utils.runAsync(() -> {
-            Config mainConfig = SongCredits.getConfig();
-            JSONObject spotifyObject = mainConfig.getSource("spotify");
-            if (spotifyObject == null) return;
-
-            spotifyObject.put("accessToken", credentials.getAccessToken());
-            spotifyObject.put("accessTokenExpire", System.currentTimeMillis() + expiresIn);
-            mainConfig.saveQuietly();
-        });
-        Logging.debug("Refreshed Spotify authorization. Schedule new refresh in " + expiresIn + "ms");
     }
 
 }
@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.spotify;
+
+import de.dereingerostete.songcredits.SongCredits;
+import de.dereingerostete.songcredits.gui.MainGui;
+import de.dereingerostete.songcredits.gui.tab.SpotifyPanel;
+import de.dereingerostete.songcredits.source.spotify.SpotifyRequestGovernor.Priority;
+import de.dereingerostete.songcredits.util.Config;
+import de.dereingerostete.songcredits.util.Logging;
+import de.dereingerostete.songcredits.util.Utils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONObject;
+import se.michaelthelin.spotify.SpotifyApi;
+import se.michaelthelin.spotify.model_objects.credentials.AuthorizationCodeCredentials;
+
+import java.io.IOException;
+import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Manages the access token of Spotify. The token is refreshed ahead of its expiry
+ * on the shared timer, with jitter. Concurrent refreshes share a single request and
+ * requests with an expired token wait for the refresh instead of failing
+ */
+public class SpotifyTokenManager {
+    private static final long REFRESH_MARGIN = 60_000L; //Time before the expiry, in ms
+    private static final long REFRESH_JITTER = 15_000L; //in ms
+    private static final long EXPIRY_SKEW = 5_000L; //Tokens this close to their expiry are not used, in ms
+    private static final long RETRY_DELAY = 5_000L; //in ms
+    private static final long MAX_RETRY_DELAY = 120_000L; //in ms
+    private static final long SAVE_DELAY = 2_000L; //in ms
+
+    protected final @NotNull SpotifyApi spotifyApi;
+    protected final @NotNull SpotifyRequestGovernor governor;
+
+    //Guarded by this
+    protected @Nullable CompletableFuture<String> inFlight;
+    protected @Nullable TimerTask scheduledRefresh;
+    protected @Nullable TimerTask pendingSave;
+    protected long expiresAt; //System.currentTimeMillis()
+    protected long retryAt; //System.currentTimeMillis(), after a failed refresh
+    protected int failedRefreshes;
+    protected boolean closed;
+
+    //Statistics, guarded by this
+    protected long refreshes;
+    protected long joinedRefreshes;
+    protected long failures;
+    protected long saves;
+
+    public SpotifyTokenManager(@NotNull SpotifyApi spotifyApi, @NotNull SpotifyRequestGovernor governor) {
+        this.spotifyApi = spotifyApi;
+        this.governor = governor;
+    }
+
+    /**
+     * @return The current access token or the token of a refresh, if the current token expired
+     */
+    @NotNull
+    public synchronized CompletableFuture<String> getAccessToken() {
+        if (inFlight != null) return inFlight;
+        long now = System.currentTimeMillis();
+        String accessToken = spotifyApi.getAccessToken();
+        if (accessToken != null && now < expiresAt - EXPIRY_SKEW) return CompletableFuture.completedFuture(accessToken);
+        if (now < retryAt)
+            return CompletableFuture.failedFuture(new IOException("Spotify access token expired and could not be refreshed"));
+        return refresh();
+    }
+
+    /**
+     * Refreshes the access token. If a refresh is already running, its future is returned
+     */
+    @NotNull
+    public synchronized CompletableFuture<String> refresh() {
+        if (inFlight != null) {
+            joinedRefreshes++;
+            return inFlight;
+        }
+
+        refreshes++;
+        CompletableFuture<String> future = governor.executeAsync(Priority.CONTROL,
+                () -> spotifyApi.authorizationCodeRefresh().build().executeAsync())
+                .thenApply(credentials -> {
+                    setCredentials(credentials, true);
+                    return credentials.getAccessToken();
+                });
+        inFlight = future;
+        future.whenComplete((token, throwable) -> onRefreshCompleted(future, throwable));
+        return future;
+    }
+
+    /**
+     * Marks the current token as expired, e.g. after Spotify rejected it
+     */
+    public synchronized void invalidate() {
+        expiresAt = 0L;
+    }
+
+    /**
+     * Uses the given credentials and schedules the next refresh ahead of their expiry
+     *
+     * @param save True if the token should be saved to the config
+     */
+    public synchronized void setCredentials(@NotNull AuthorizationCodeCredentials credentials, boolean save) {
+        String refreshToken = credentials.getRefreshToken();
+        if (refreshToken != null) spotifyApi.setRefreshToken(refreshToken);
+        setAccessToken(credentials.getAccessToken(), System.currentTimeMillis() + credentials.getExpiresIn() * 1000L);
+        if (save) scheduleSave();
+    }
+
+    //Uses a token loaded from the config
+    public synchronized void setAccessToken(@NotNull String accessToken, long expiresAt) {
+        this.expiresAt = expiresAt;
+        this.failedRefreshes = 0;
+        this.retryAt = 0L;
+        spotifyApi.setAccessToken(accessToken);
+
+        SpotifyPanel panel = MainGui.getMainGui().getSpotifyPanel();
+        if (panel != null) panel.setAccessToken(accessToken);
+
+        long jitter = ThreadLocalRandom.current().nextLong(REFRESH_JITTER + 1L);
+        long delay = Math.max(expiresAt - System.currentTimeMillis() - REFRESH_MARGIN - jitter, 1000L);
+        scheduleRefresh(delay);
+        Logging.debug("Refreshed Spotify authorization. Schedule new refresh in " + delay + "ms");
+    }
+
+    private synchronized void onRefreshCompleted(@NotNull CompletableFuture<String> future, @Nullable Throwable throwable) {
+        if (inFlight == future) inFlight = null;
+        if (throwable == null) return;
+
+        failures++;
+        failedRefreshes++;
+        long delay = Math.min(RETRY_DELAY << Math.min(failedRefreshes - 1, 10), MAX_RETRY_DELAY);
+        delay += ThreadLocalRandom.current().nextLong(delay / 5L + 1L);
+        retryAt = System.currentTimeMillis() + delay;
+        scheduleRefresh(delay);
+        Logging.warning("Failed to refresh spotify auth. Retrying in " + delay + "ms", throwable);
+    }
+
+    private void scheduleRefresh(long delay) {
+        if (closed) return;
+        if (scheduledRefresh != null) scheduledRefresh.cancel();
+        scheduledRefresh = Utils.runLater(this::refresh, delay);
+    }
+
+    //Multiple refreshes in a short time are saved once
+    private void scheduleSave() {
+        if (closed || pendingSave != null) return;
+        pendingSave = Utils.runLater(() -> Utils.runAsync(this::save), SAVE_DELAY);
+    }
+
+    private void save() {
+        String accessToken;
+        String refreshToken;
+        long expiresAt;
+        synchronized (this) {
+            pendingSave = null;
+            accessToken = spotifyApi.getAccessToken();
+            refreshToken = spotifyApi.getRefreshToken();
+            expiresAt = this.expiresAt;
+            saves++;
+        }
+
+        Config mainConfig = SongCredits.getConfig();
+        JSONObject spotifyObject = mainConfig.getSource("spotify");
+        if (spotifyObject == null || accessToken == null) return;
+
+        spotifyObject.put("accessToken", accessToken);
+        spotifyObject.put("accessTokenExpire", expiresAt);
+        if (refreshToken != null) spotifyObject.put("refreshToken", refreshToken);
+        mainConfig.saveQuietly();
+    }
+
+    @NotNull
+    public synchronized String getStatistics() {
+        return String.format("refreshes: %d, joined refreshes: %d, failures: %d, saves: %d",
+                refreshes, joinedRefreshes, failures, saves);
+    }
+
+    //Cancels the scheduled refresh and saves a pending token
+    public void close() {
+        boolean save;
+        synchronized (this) {
+            closed = true;
+            if (scheduledRefresh != null) scheduledRefresh.cancel();
+            save = pendingSave != null && pendingSave.cancel();
+        }
+        if (save) save();
+    }
+
+}
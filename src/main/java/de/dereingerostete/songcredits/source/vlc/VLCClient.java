@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.vlc;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A client for the web interface of VLC.
+ * The connection is kept alive and reused between requests
+ * and every request is limited in time and response size.
+ * The time limit includes reading the body, timeouts of 0 or less disable the limit
+ */
+public class VLCClient {
+    protected final @NotNull HttpClient client;
+    protected final @Getter @NotNull URI baseUri;
+    protected final @NotNull String authentication;
+    protected final @Nullable Duration readTimeout; //Null if requests are not limited in time
+    protected final @Getter int maxResponseSize; //in bytes
+
+    //Statistics
+    protected final AtomicLong requests = new AtomicLong();
+    protected final AtomicLong failures = new AtomicLong();
+    protected final AtomicLong totalLatency = new AtomicLong(); //in ns
+    protected final AtomicLong maxLatency = new AtomicLong(); //in ns
+    protected volatile long lastLatency; //in ns
+
+    public VLCClient(@NotNull String host, int port, @NotNull String authentication,
+                     long connectTimeout, long readTimeout, int maxResponseSize) {
+        this(newHttpClient(connectTimeout), host, port, authentication, readTimeout, maxResponseSize);
+    }
+
+    /**
+     * Creates a client using the given http client,
+     * which allows multiple instances to share their connection pool
+     */
+    public VLCClient(@NotNull HttpClient client, @NotNull String host, int port,
+                     @NotNull String authentication, long readTimeout, int maxResponseSize) {
+        this.client = client;
+        this.baseUri = URI.create(host + ":" + port + "/");
+        this.authentication = authentication;
+        this.readTimeout = readTimeout > 0L ? Duration.ofMillis(readTimeout) : null;
+        this.maxResponseSize = maxResponseSize;
+    }
+
+    @NotNull
+    public static HttpClient newHttpClient(long connectTimeout) {
+        HttpClient.Builder builder = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1);
+        if (connectTimeout > 0L) builder.connectTimeout(Duration.ofMillis(connectTimeout));
+        return builder.build();
+    }
+
+    /**
+     * @param request The request relative to the requests folder (e.g. status.json)
+     * @return The body of the response
+     * @throws IOException If the request failed, timed out or the response was too large
+     */
+    @NotNull
+    public String get(@NotNull String request) throws IOException {
+        byte[] body = send("requests/" + request, false);
+        return new String(Objects.requireNonNull(body), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param path The path relative to the web interface (e.g. art)
+     * @return The body of the response or null if VLC responded with not found
+     * @throws IOException If the request failed, timed out or the response was too large
+     */
+    @Nullable
+    public byte[] getBytes(@NotNull String path) throws IOException {
+        return send(path, true);
+    }
+
+    /**
+     * The timeout of the request only limits the wait for the headers,
+     * so the complete response is awaited with the connect and read timeout
+     */
+    @Nullable
+    protected byte[] send(@NotNull String path, boolean allowNotFound) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(baseUri.resolve(path))
+                .header("Authorization", authentication);
+        if (readTimeout != null) builder.timeout(readTimeout);
+        HttpRequest httpRequest = builder.GET().build();
+
+        long start = System.nanoTime();
+        boolean success = false;
+        CompletableFuture<HttpResponse<byte[]>> future = client.sendAsync(httpRequest, this::handleBody);
+        try {
+            HttpResponse<byte[]> response;
+            if (readTimeout == null) response = future.get();
+            else {
+                Duration timeout = client.connectTimeout().orElse(Duration.ZERO).plus(readTimeout);
+                response = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            }
+
+            int statusCode = response.statusCode();
+            if (statusCode == 404 && allowNotFound) {
+                success = true;
+                return null;
+            } else if (statusCode != 200) throw new IOException("VLC responded with status code " + statusCode);
+
+            success = true;
+            return Objects.requireNonNull(response.body());
+        } catch (TimeoutException exception) {
+            future.cancel(true);
+            throw new HttpTimeoutException("VLC did not respond in time");
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException("Request failed", cause);
+        } catch (InterruptedException exception) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Request was interrupted", exception);
+        } finally {
+            recordRequest(System.nanoTime() - start, success);
+        }
+    }
+
+    //Only the body of successful responses is kept, other bodies are discarded
+    @NotNull
+    private HttpResponse.BodySubscriber<byte[]> handleBody(@NotNull HttpResponse.ResponseInfo info) {
+        if (info.statusCode() == 200) return new LimitedBodySubscriber(maxResponseSize);
+        return HttpResponse.BodySubscribers.replacing(null);
+    }
+
+    private void recordRequest(long latency, boolean success) {
+        requests.incrementAndGet();
+        if (!success) failures.incrementAndGet();
+        totalLatency.addAndGet(latency);
+        maxLatency.accumulateAndGet(latency, Math::max);
+        lastLatency = latency;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public double getAverageLatencyMillis() {
+        long count = requests.get();
+        return count == 0 ? 0D : totalLatency.get() / (count * 1_000_000D);
+    }
+
+    public double getMaxLatencyMillis() {
+        return maxLatency.get() / 1_000_000D;
+    }
+
+    public double getLastLatencyMillis() {
+        return lastLatency / 1_000_000D;
+    }
+
+    @NotNull
+    public String getStatistics() {
+        return String.format("requests: %d, failures: %d, avg. latency: %.2fms, max. latency: %.2fms",
+                getRequests(), getFailures(), getAverageLatencyMillis(), getMaxLatencyMillis());
+    }
+
+    //Reads the complete body, so the connection can be reused, and fails if it exceeds the limit
+    private static class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+        private final int maxSize;
+        private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream(8192);
+        private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        private LimitedBodySubscriber(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        public void onSubscribe(@NotNull Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(@NotNull List<ByteBuffer> buffers) {
+            if (body.isDone()) return;
+            for (ByteBuffer buffer : buffers) {
+                int length = buffer.remaining();
+                if (outputStream.size() + length > maxSize) {
+                    subscription.cancel();
+                    body.completeExceptionally(new IOException("Response exceeds the limit of " + maxSize + " bytes"));
+                    return;
+                }
+
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                outputStream.write(bytes, 0, length);
+            }
+        }
+
+        @Override
+        public void onError(@NotNull Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            body.complete(outputStream.toByteArray());
+        }
+
+        @NotNull
+        @Override
+        public CompletionStage<byte[]> getBody() {
+            return body;
+        }
+
+    }
+
+}
@@ -10,6 +10,7 @@ package de.dereingerostete.songcredits.source.vlc;
 
 import de.dereingerostete.songcredits.source.SourceConfig;
 import de.dereingerostete.songcredits.source.SourceType;
+import de.dereingerostete.songcredits.source.manager.ArbitrationPolicy;
 import de.dereingerostete.songcredits.util.Config;
 import de.dereingerostete.songcredits.util.SystemUtils;
 import lombok.AllArgsConstructor;
@@ -17,11 +18,14 @@ import lombok.Builder;
 import lombok.Data;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 @Data
 @Builder(builderClassName = "Builder")
@@ -39,6 +43,14 @@ public class VLCConfig implements SourceConfig {
     protected boolean resolveCover;
     protected @Nullable String resolution;
 
+    protected long connectTimeout; //in ms
+    protected long readTimeout; //in ms
+    protected int maxResponseSize; //in bytes
+
+    //Further instances, which are polled together with the main instance
+    protected @NotNull List<Endpoint> endpoints;
+    protected @NotNull ArbitrationPolicy selectionPolicy;
+
     public VLCConfig(@NotNull JSONObject vlcObject, @NotNull Config config) {
         this.vlcObject = vlcObject;
         this.config = config;
@@ -50,6 +62,22 @@ public class VLCConfig implements SourceConfig {
         this.host = host == null ? "localhost" : formatHost(host);
 
         refreshRate = vlcObject.optLong("refreshRate",1000L);
+        connectTimeout = vlcObject.optLong("connectTimeout", 2000L);
+        readTimeout = vlcObject.optLong("readTimeout", 3000L);
+        maxResponseSize = vlcObject.optInt("maxResponseSize", 1024 * 1024);
+        selectionPolicy = vlcObject.optEnum(ArbitrationPolicy.class, "selection", ArbitrationPolicy.PRIORITY);
+        endpoints = new ArrayList<>();
+        JSONArray endpointsArray = vlcObject.optJSONArray("endpoints");
+        if (endpointsArray != null) {
+            for (int i = 0; i < endpointsArray.length(); i++) {
+                JSONObject endpointObject = endpointsArray.optJSONObject(i);
+                if (endpointObject == null) continue;
+                String endpointHost = endpointObject.optString("host", "localhost");
+                int endpointPort = endpointObject.optInt("port", 8080);
+                endpoints.add(new Endpoint(endpointHost, endpointPort, endpointObject.optString("password", null)));
+            }
+        }
+
         String configFilePath = vlcObject.optString("configFile", null);
         if (configFilePath != null) this.configFile = new File(configFilePath);
         else {
@@ -127,4 +155,12 @@ public class VLCConfig implements SourceConfig {
         }
     }
 
+    @Data
+    public static class Endpoint {
+        private final @NotNull String host;
+        private final int port;
+        private final @Nullable String password; //Null to use the password of the main instance
+
+    }
+
 }
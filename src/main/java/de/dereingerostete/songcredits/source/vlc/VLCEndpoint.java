@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.vlc;
+
+import de.dereingerostete.songcredits.source.PlayingState;
+import de.dereingerostete.songcredits.source.SourceException;
+import de.dereingerostete.songcredits.source.SourceHealth;
+import de.dereingerostete.songcredits.source.manager.CircuitBreaker;
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A single VLC instance polled by the {@link VLCSource}.
+ * Every endpoint has its own circuit breaker, so a dead instance
+ * is skipped without slowing down the others
+ */
+@Getter
+public class VLCEndpoint {
+    protected final @NotNull String name; //host:port
+    protected final @NotNull VLCClient client;
+    protected final @NotNull CircuitBreaker circuitBreaker;
+
+    protected volatile @Nullable VLCStatus status; //Null if the last refresh failed
+    protected volatile @Nullable SourceException lastFailure;
+    protected volatile long lastChange; //System.nanoTime() of the last song or state change
+    protected @Nullable CompletableFuture<Void> pendingRefresh; //Guarded by this
+
+    public VLCEndpoint(@NotNull String name, @NotNull VLCClient client, @NotNull CircuitBreaker circuitBreaker) {
+        this.name = name;
+        this.client = client;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Fetches the status and optionally executes a command before
+     *
+     * @throws SourceException If the request failed or the status could not be parsed
+     */
+    @NotNull
+    public VLCStatus fetchStatus(@Nullable String command) throws SourceException {
+        try {
+            String request = "status.json";
+            if (command != null) request = request + "?command=" + command;
+            VLCStatus status = VLCStatus.parse(client.get(request));
+            circuitBreaker.onSuccess();
+            update(status);
+            return status;
+        } catch (IOException exception) {
+            throw onFailure(new SourceException("Failed to get current status of " + name, exception));
+        } catch (SourceException exception) {
+            throw onFailure(exception);
+        }
+    }
+
+    /**
+     * Refreshes the status, failures are kept instead of thrown
+     *
+     * @return True if the status was refreshed
+     */
+    public boolean refresh() {
+        if (!circuitBreaker.allowRequest()) return false;
+        try {
+            fetchStatus(null);
+            return true;
+        } catch (SourceException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Refreshes the status in the background. If the last refresh is still running,
+     * no new refresh is started and the running refresh is returned
+     */
+    @NotNull
+    public synchronized CompletableFuture<Void> refreshAsync(@NotNull Executor executor) {
+        CompletableFuture<Void> pending = pendingRefresh;
+        if (pending != null && !pending.isDone()) return pending;
+
+        try {
+            pending = CompletableFuture.runAsync(this::refresh, executor);
+        } catch (RejectedExecutionException exception) {
+            pending = CompletableFuture.completedFuture(null); //Refreshed with the next tick
+        }
+        pendingRefresh = pending;
+        return pending;
+    }
+
+    public boolean isAvailable() {
+        return status != null && circuitBreaker.getHealth() != SourceHealth.OPEN;
+    }
+
+    public boolean isPlaying() {
+        VLCStatus status = this.status;
+        return isAvailable() && status != null && status.getState() == PlayingState.PLAYING;
+    }
+
+    private void update(@NotNull VLCStatus status) {
+        VLCStatus oldStatus = this.status;
+        if (oldStatus == null || oldStatus.getState() != status.getState()
+                || oldStatus.getPlaylistId() != status.getPlaylistId()) lastChange = System.nanoTime();
+        this.status = status;
+        this.lastFailure = null;
+    }
+
+    @NotNull
+    private SourceException onFailure(@NotNull SourceException exception) {
+        circuitBreaker.onFailure();
+        status = null;
+        lastFailure = exception;
+        return exception;
+    }
+
+}
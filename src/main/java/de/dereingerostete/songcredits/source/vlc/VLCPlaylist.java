@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.vlc;
+
+import de.dereingerostete.songcredits.source.SourceException;
+import de.dereingerostete.songcredits.util.JsonPullReader;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The items of a playlist.json response of VLC.
+ * Every top level node (e.g. the playlist and the media library)
+ * is stored as its own list of items in playing order
+ */
+public class VLCPlaylist {
+    protected final @NotNull List<List<Item>> nodes;
+
+    public VLCPlaylist(@NotNull List<List<Item>> nodes) {
+        this.nodes = nodes;
+    }
+
+    @NotNull
+    public static VLCPlaylist parse(@NotNull String response) throws SourceException {
+        try {
+            JsonPullReader reader = new JsonPullReader(response);
+            List<List<Item>> nodes = new ArrayList<>();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("children") || reader.peek() != JsonPullReader.Token.ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    List<Item> items = new ArrayList<>();
+                    readNode(reader, items);
+                    nodes.add(items);
+                }
+                reader.endArray();
+            }
+            reader.endObject();
+            return new VLCPlaylist(nodes);
+        } catch (JSONException exception) {
+            throw new SourceException("Failed to parse playlist", exception);
+        }
+    }
+
+    //Adds the node itself if it is a leaf, otherwise all leaves below it
+    private static void readNode(@NotNull JsonPullReader reader, @NotNull List<Item> items) {
+        int id = -1, duration = -1;
+        String name = null, uri = null;
+        boolean leaf = false;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
+            if (reader.peek() == JsonPullReader.Token.NULL) {
+                reader.skipValue();
+                continue;
+            }
+
+            switch (key) {
+                case "type":
+                    leaf = reader.nextString().equals("leaf");
+                    break;
+                case "id":
+                    String value = reader.nextValueAsString();
+                    try {
+                        if (value != null) id = Integer.parseInt(value);
+                    } catch (NumberFormatException ignored) {}
+                    break;
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "uri":
+                    uri = reader.nextString();
+                    break;
+                case "duration":
+                    duration = reader.nextInt();
+                    break;
+                case "children":
+                    if (reader.peek() != JsonPullReader.Token.ARRAY) {
+                        reader.skipValue();
+                        break;
+                    }
+
+                    reader.beginArray();
+                    while (reader.hasNext()) readNode(reader, items);
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (leaf && id >= 0) items.add(new Item(id, name == null ? "" : name, uri, duration));
+    }
+
+    /**
+     * @param playlistId The id of the current item
+     * @param loop If the playlist starts again after the last item
+     * @return The item played after the current one or null if unknown
+     */
+    @Nullable
+    public Item findNext(int playlistId, boolean loop) {
+        for (List<Item> items : nodes) {
+            for (int i = 0; i < items.size(); i++) {
+                if (items.get(i).getId() != playlistId) continue;
+                if (i + 1 < items.size()) return items.get(i + 1);
+                return loop && items.size() > 1 ? items.get(0) : null;
+            }
+        }
+        return null;
+    }
+
+    @NotNull
+    public List<List<Item>> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    @Getter
+    @ToString
+    @RequiredArgsConstructor
+    public static class Item {
+        private final int id;
+        private final @NotNull String name; //The title if VLC read it, otherwise the file name
+        private final @Nullable String uri;
+        private final int duration; //in seconds
+
+    }
+
+}
@@ -8,6 +8,7 @@
 
 package de.dereingerostete.songcredits.source.vlc;
 
+import lombok.Getter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -16,23 +17,40 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+/**
+ * The properties of a vlcrc file. The lines of the file are kept,
+ * so saving only replaces the lines of changed properties
+ */
 public class VLCProperties {
     protected final @NotNull Map<String, String> map;
-    protected final @NotNull File file;
+    protected final @NotNull Map<String, Integer> lineIndices;
+    protected final @NotNull List<String> lines;
+    protected final @Getter @NotNull File file;
+    protected @Getter boolean modified;
 
     public VLCProperties(@NotNull File file) throws IOException {
         this.map = new HashMap<>();
+        this.lineIndices = new HashMap<>();
+        this.lines = new ArrayList<>();
         this.file = file;
-        BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8));
-        String line;
-        while ((line = reader.readLine()) != null) {
-            if (line.isBlank() || line.startsWith("#") || !line.contains("=")) continue;
-            String[] split = line.split("=", 2);
-            if (split.length != 2) throw new IOException("Invalid line '" + line + "'");
-            map.put(split[0], split[1]);
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+                if (line.isBlank() || line.startsWith("#") || !line.contains("=")) continue;
+                String[] split = line.split("=", 2);
+                if (split.length != 2) throw new IOException("Invalid line '" + line + "'");
+                map.put(split[0], split[1]);
+                lineIndices.put(split[0], lines.size() - 1);
+            }
         }
     }
 
@@ -51,4 +69,42 @@ public class VLCProperties {
         return property == null ? defaultValue : Integer.parseInt(property);
     }
 
+    /**
+     * Sets a property. The line of the property is replaced or appended if it does not exist
+     *
+     * @return True if the value changed
+     */
+    public boolean setProperty(@NotNull String key, @NotNull String value) {
+        if (value.equals(map.get(key))) return false;
+        map.put(key, value);
+
+        String line = key + "=" + value;
+        Integer index = lineIndices.get(key);
+        if (index != null) lines.set(index, line);
+        else {
+            lines.add(line);
+            lineIndices.put(key, lines.size() - 1);
+        }
+        modified = true;
+        return true;
+    }
+
+    /**
+     * Writes the file if a property was changed. The file is written to a
+     * temporary file first and then replaces the file, so VLC never reads a partial file
+     */
+    public void save() throws IOException {
+        if (!modified) return;
+        Path path = file.toPath();
+        Path directory = path.toAbsolutePath().getParent();
+        Path tempFile = Files.createTempFile(directory, file.getName(), ".tmp");
+        try {
+            Files.write(tempFile, lines, StandardCharsets.UTF_8);
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+        modified = false;
+    }
+
 }
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.vlc;
+
+import de.dereingerostete.songcredits.source.SourceConfig;
+import de.dereingerostete.songcredits.source.SourceType;
+import de.dereingerostete.songcredits.util.Config;
+import lombok.Data;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+@Data
+public class VLCRCConfig implements SourceConfig {
+    protected final @NotNull JSONObject rcObject;
+    protected final @NotNull Config config;
+
+    protected @NotNull String host;
+    protected int port;
+    protected @Nullable String password; //Only needed for the telnet interface
+    protected long refreshRate;
+    protected long connectTimeout; //in ms
+    protected long readTimeout; //in ms
+
+    protected boolean resolveCover;
+    protected @Nullable String resolution;
+
+    public VLCRCConfig(@NotNull JSONObject rcObject, @NotNull Config config) {
+        this.rcObject = rcObject;
+        this.config = config;
+
+        this.host = rcObject.optString("host", "localhost");
+        this.port = rcObject.optInt("port", 4212);
+        this.password = rcObject.optString("password", null);
+        this.refreshRate = rcObject.optLong("refreshRate", 500L);
+        this.connectTimeout = rcObject.optLong("connectTimeout", 2000L);
+        this.readTimeout = rcObject.optLong("readTimeout", 3000L);
+
+        JSONObject generalObject = config.getJSONObject("general");
+        if (generalObject == null) throw new IllegalStateException("General Config cannot be null");
+        resolveCover = generalObject.optBoolean("resolveCover", false);
+        resolution = generalObject.optString("coverResolution", null);
+    }
+
+    @Override
+    public boolean isComplete() {
+        return resolution != null;
+    }
+
+    @NotNull
+    @Override
+    public SourceType getSourceType() {
+        return SourceType.VLC_RC;
+    }
+
+    public void setRefreshRate(long refreshRate) {
+        this.refreshRate = refreshRate;
+        rcObject.put("refreshRate", refreshRate);
+    }
+
+    public void save() throws IOException {
+        config.save();
+    }
+
+}
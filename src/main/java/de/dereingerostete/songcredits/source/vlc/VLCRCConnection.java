@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.vlc;
+
+import de.dereingerostete.songcredits.util.Logging;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A connection to the RC or telnet interface of VLC over a single long-lived socket.
+ * Commands are pipelined: all commands are sent at once and the responses are read
+ * afterwards, separated by the prompt VLC sends after every command.
+ * Every batch ends with an unknown command, which VLC echoes in its error message.
+ * If the echo is not the last response, a prompt was missing or too much
+ * and the connection is reopened instead of assigning responses to the wrong commands
+ */
+public class VLCRCConnection implements Closeable {
+    private static final String PROMPT = "> ";
+    private static final String PASSWORD_PROMPT = "Password: ";
+    private static final int MAX_RESPONSE_LENGTH = 64 * 1024; //in bytes
+    private static final String SYNC_COMMAND = "songcredits_sync_";
+
+    //Telnet commands, the telnet interface negotiates the echo of the password with them
+    private static final int IAC = 0xFF; //Interpret as command, starts every command
+    private static final int SB = 0xFA; //Starts a subnegotiation, which ends with IAC SE
+    private static final int SE = 0xF0;
+    private static final int WILL = 0xFB; //WILL, WONT, DO and DONT are followed by an option
+    private static final int DONT = 0xFE;
+
+    protected final @NotNull String host;
+    protected final int port;
+    protected final @Nullable String password;
+    protected final int connectTimeout; //in ms
+    protected final int readTimeout; //in ms
+
+    //Guarded by this
+    protected @Nullable Socket socket;
+    protected @Nullable InputStream input;
+    protected @Nullable Writer writer;
+    protected long syncId;
+
+    //Statistics
+    protected final AtomicLong requests = new AtomicLong();
+    protected final AtomicLong connects = new AtomicLong();
+    protected final AtomicLong totalLatency = new AtomicLong(); //in ns
+    protected final AtomicLong desyncs = new AtomicLong();
+
+    public VLCRCConnection(@NotNull String host, int port, @Nullable String password,
+                           long connectTimeout, long readTimeout) {
+        this.host = host;
+        this.port = port;
+        this.password = password;
+        this.connectTimeout = (int) Math.max(connectTimeout, 0L); //0 means no timeout
+        this.readTimeout = (int) Math.max(readTimeout, 0L);
+    }
+
+    /**
+     * Sends all commands at once and reads their responses
+     *
+     * @return The responses in the order of the commands
+     * @throws IOException If the connection failed. The connection is reopened with the next call
+     */
+    @NotNull
+    public synchronized List<String> send(@NotNull String... commands) throws IOException {
+        long start = System.nanoTime();
+        try {
+            connect();
+            StringBuilder builder = new StringBuilder();
+            for (String command : commands) builder.append(command).append('\n');
+            String sync = SYNC_COMMAND + (++syncId);
+            builder.append(sync).append('\n');
+            Writer writer = this.writer;
+            writer.write(builder.toString());
+            writer.flush();
+
+            List<String> responses = new ArrayList<>(commands.length);
+            for (int i = 0; i < commands.length; i++) responses.add(readResponse(false));
+            if (!readResponse(false).contains(sync)) {
+                desyncs.incrementAndGet();
+                throw new IOException("Responses of VLC are out of sync");
+            }
+            return responses;
+        } catch (IOException exception) {
+            disconnect();
+            throw exception;
+        } finally {
+            requests.incrementAndGet();
+            totalLatency.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private void connect() throws IOException {
+        if (socket != null && !socket.isClosed()) return;
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(host, port), connectTimeout);
+        socket.setSoTimeout(readTimeout);
+        socket.setTcpNoDelay(true);
+        this.socket = socket;
+        this.input = new BufferedInputStream(socket.getInputStream());
+        this.writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        connects.incrementAndGet();
+
+        //The telnet interface asks for a password, the RC interface directly shows the prompt
+        String greeting = readResponse(true);
+        if (greeting.endsWith(PASSWORD_PROMPT)) {
+            writer.write((password == null ? "" : password) + "\n");
+            writer.flush();
+            if (readResponse(true).endsWith(PASSWORD_PROMPT)) throw new IOException("Wrong password for VLC");
+        }
+        Logging.debug("Connected to VLC at " + host + ":" + port);
+    }
+
+    /**
+     * Reads until the next prompt and returns everything before it.
+     * Telnet commands are removed from the raw bytes, lines are decoded afterwards
+     */
+    @NotNull
+    private String readResponse(boolean stopAtPassword) throws IOException {
+        InputStream input = this.input;
+        if (input == null) throw new IOException("Not connected");
+
+        StringBuilder builder = new StringBuilder();
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int length = 0;
+        while (true) {
+            int read = readByte(input);
+            if (read == IAC) {
+                skipCommand(input);
+                continue;
+            }
+
+            //Skips carriage returns and other control characters
+            if (read < 0x20 && read != '\n') continue;
+            if (++length > MAX_RESPONSE_LENGTH)
+                throw new IOException("Response exceeds the limit of " + MAX_RESPONSE_LENGTH + " bytes");
+
+            if (read == '\n') {
+                builder.append(line.toString(StandardCharsets.UTF_8)).append('\n');
+                line.reset();
+                continue;
+            }
+
+            line.write(read);
+            if (read != ' ') continue; //Both prompts end with a space
+            String text = line.toString(StandardCharsets.UTF_8);
+            if (text.equals(PROMPT)) return builder.toString().trim();
+            else if (stopAtPassword && text.endsWith(PASSWORD_PROMPT)) return builder.append(text).toString();
+        }
+    }
+
+    //Skips the telnet command after an IAC byte
+    private static void skipCommand(@NotNull InputStream input) throws IOException {
+        int command = readByte(input);
+        if (command >= WILL && command <= DONT) readByte(input); //The option
+        else if (command == SB) {
+            //IAC IAC is an escaped data byte inside the subnegotiation
+            while (true) {
+                if (readByte(input) == IAC && readByte(input) == SE) return;
+            }
+        }
+    }
+
+    private static int readByte(@NotNull InputStream input) throws IOException {
+        int read = input.read();
+        if (read == -1) throw new EOFException("Connection was closed by VLC");
+        return read;
+    }
+
+    private void disconnect() {
+        try {
+            if (socket != null) socket.close();
+        } catch (IOException ignored) {}
+        socket = null;
+        input = null;
+        writer = null;
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public double getAverageLatencyMillis() {
+        long count = requests.get();
+        return count == 0 ? 0D : totalLatency.get() / (count * 1_000_000D);
+    }
+
+    @NotNull
+    public String getStatistics() {
+        return String.format("requests: %d, connects: %d, desyncs: %d, avg. latency: %.2fms",
+                getRequests(), connects.get(), desyncs.get(), getAverageLatencyMillis());
+    }
+
+    @Override
+    public synchronized void close() {
+        disconnect();
+    }
+
+}
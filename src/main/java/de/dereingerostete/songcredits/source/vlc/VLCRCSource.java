@@ -0,0 +1,283 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.vlc;
+
+import de.dereingerostete.songcredits.song.Song;
+import de.dereingerostete.songcredits.source.AudioSource;
+import de.dereingerostete.songcredits.source.PlayingState;
+import de.dereingerostete.songcredits.source.SourceException;
+import de.dereingerostete.songcredits.source.SourceType;
+import de.dereingerostete.songcredits.util.Logging;
+import de.dereingerostete.songcredits.util.Utils;
+import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.FilenameUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A VLC source using the RC or telnet interface instead of the web interface.
+ * A refresh pipelines four small commands over a single socket, the full
+ * metadata is only requested once per song
+ */
+public class VLCRCSource extends AudioSource {
+    private static final String[] REFRESH_COMMANDS = {"status", "get_time", "get_length", "get_title"};
+
+    protected final @NotNull VLCRCConnection connection;
+    protected final boolean resolveCover;
+    protected final String coverResolution;
+
+    private volatile @Nullable Song currentSong;
+    private volatile @NotNull PlayingState state = PlayingState.STOPPED;
+    private volatile int position = -1; //in ms
+    private volatile int length = -1; //in ms
+    private @Nullable String currentSongKey; //Guarded by this
+
+    public VLCRCSource(@NotNull VLCRCConfig config) {
+        super(SourceType.VLC_RC, config);
+        resolveCover = config.isResolveCover();
+        coverResolution = config.getResolution();
+        connection = new VLCRCConnection(config.getHost(), config.getPort(), config.getPassword(),
+                config.getConnectTimeout(), config.getReadTimeout());
+    }
+
+    @Nullable
+    @Override
+    public Song getCurrentSong() {
+        return currentSong;
+    }
+
+    @NotNull
+    @Override
+    public PlayingState getCurrentState() {
+        return state;
+    }
+
+    @Override
+    public int getCurrentPosition() {
+        return position;
+    }
+
+    @Override
+    public int getCurrentLength() {
+        return length;
+    }
+
+    @Override
+    public void refresh() throws SourceException {
+        List<String> responses = send(REFRESH_COMMANDS);
+        Status status = parseStatus(responses.get(0));
+        int position = parseSeconds(responses.get(1));
+        int length = parseSeconds(responses.get(2));
+        this.position = position;
+        this.length = length;
+        applyStatus(status, responses.get(3));
+    }
+
+    //Called by refreshes and control commands, which may run on different threads
+    private synchronized void applyStatus(@NotNull Status status, @NotNull String title) throws SourceException {
+        state = status.state;
+        if (status.uri == null) return;
+
+        //Streams keep their input but change the title
+        String songKey = status.uri + "/" + title;
+        if (songKey.equals(currentSongKey) && currentSong != null) return;
+
+        Song song = retrieveSong(status.uri, title);
+        currentSong = song;
+        currentSongKey = songKey;
+        updateSongIdentity(songKey);
+        if (resolveCover) resolveArtworkAsync(song, songKey);
+    }
+
+    //Only called if the song changed
+    @NotNull
+    private Song retrieveSong(@NotNull String uri, @NotNull String title) throws SourceException {
+        Song song = new Song();
+        parseInfo(send("info").get(0)).forEach(song::addMetadata);
+        if (!title.isEmpty() && !song.hasMetadata(Song.Metadata.TITLE)) song.addMetadata(Song.Metadata.TITLE, title);
+
+        String fileName = getFileName(uri);
+        if (fileName != null) song.addMetadata(Song.Metadata.FILE_NAME, fileName);
+        return song;
+    }
+
+    //The RC interface does not provide the artwork, so it is always searched on iTunes
+    private void resolveArtworkAsync(@NotNull Song song, @NotNull String songKey) {
+        Utils.runAsync(() -> {
+            URL url = resolveArtwork(song);
+            if (url == null) return;
+
+            synchronized (this) {
+                if (!songKey.equals(currentSongKey)) return; //The song changed in the meantime
+                Song resolvedSong = new Song(song);
+                String rawUrl = url.toString();
+                resolvedSong.addMetadata(Song.Metadata.COVER, rawUrl);
+                resolvedSong.addMetadata(Song.Metadata.ARTWORK_URL, rawUrl);
+                currentSong = resolvedSong;
+                updateArtwork();
+            }
+            notifyUpdate();
+        });
+    }
+
+    @Nullable
+    private URL resolveArtwork(@NotNull Song song) {
+        String track = song.getMetadata(Song.Metadata.TITLE);
+        String artists = song.getMetadata(Song.Metadata.ARTIST);
+
+        boolean validate = true;
+        if (track == null || artists == null) {
+            track = song.getMetadata(Song.Metadata.FILE_NAME);
+            if (track != null) track = FilenameUtils.getBaseName(track);
+            validate = false;
+        }
+
+        try {
+            if (track != null) return song.resolveArtwork(track, artists, coverResolution, validate);
+        } catch (IOException exception) {
+            Logging.warning("Failed to resolve artwork of song", exception);
+        }
+        return null;
+    }
+
+    @NotNull
+    private List<String> send(@NotNull String... commands) throws SourceException {
+        try {
+            return connection.send(commands);
+        } catch (IOException exception) {
+            throw new SourceException("Failed to send commands to VLC", exception);
+        }
+    }
+
+    //Parses lines like "( new input: file:///song.mp3 )" and "( state playing )"
+    @NotNull
+    private static Status parseStatus(@NotNull String response) throws SourceException {
+        String uri = null;
+        PlayingState state = null;
+        for (String line : response.split("\n")) {
+            line = line.trim();
+            if (!line.startsWith("(") || !line.endsWith(")")) continue;
+            line = line.substring(1, line.length() - 1).trim();
+
+            if (line.startsWith("new input:")) uri = line.substring(10).trim();
+            else if (line.startsWith("state ")) {
+                String value = line.substring(6).trim().toUpperCase(Locale.ROOT);
+                try {
+                    state = PlayingState.valueOf(value);
+                } catch (IllegalArgumentException exception) {
+                    throw new SourceException("Current state is of unknown type", exception);
+                }
+            }
+        }
+
+        if (state == null) throw new SourceException("Status is missing the state");
+        return new Status(uri, state);
+    }
+
+    //Parses the meta data section of lines like "| title: Song"
+    @NotNull
+    private static Map<String, String> parseInfo(@NotNull String response) {
+        Map<String, String> meta = new HashMap<>();
+        boolean metaSection = false;
+        for (String line : response.split("\n")) {
+            if (line.startsWith("+")) {
+                metaSection = line.contains("[ Meta data ]");
+                continue;
+            }
+            if (!metaSection || !line.startsWith("| ")) continue;
+
+            int index = line.indexOf(": ");
+            if (index < 0) continue;
+            String key = line.substring(2, index).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(index + 2).trim();
+            if (!key.isEmpty() && !value.isEmpty()) meta.put(key, value);
+        }
+        return meta;
+    }
+
+    /**
+     * @return The time in ms or -1 if nothing is playing
+     * @throws SourceException If the response is not a number, the connection is reopened
+     */
+    private int parseSeconds(@NotNull String response) throws SourceException {
+        String value = response.trim();
+        if (value.isEmpty()) return -1;
+        try {
+            return Integer.parseInt(value) * 1000;
+        } catch (NumberFormatException exception) {
+            connection.close(); //The response belongs to another command
+            throw new SourceException("Expected a time but VLC responded with '" + value + "'", exception);
+        }
+    }
+
+    @Nullable
+    private static String getFileName(@NotNull String uri) {
+        try {
+            String path = new URI(uri).getPath();
+            return path == null ? null : FilenameUtils.getName(path);
+        } catch (URISyntaxException exception) {
+            return FilenameUtils.getName(uri);
+        }
+    }
+
+    //The status after a command is used as the latest status
+    @NotNull
+    private PlayingState execute(@NotNull String command) throws SourceException {
+        List<String> responses = send(command, "status", "get_title");
+        Status status = parseStatus(responses.get(1));
+        applyStatus(status, responses.get(2));
+        return status.state;
+    }
+
+    @Override
+    public boolean nextSong() throws SourceException {
+        return execute("next") == PlayingState.PLAYING;
+    }
+
+    @Override
+    public boolean previousSong() throws SourceException {
+        return execute("prev") == PlayingState.PLAYING;
+    }
+
+    @Override
+    public boolean pause() throws SourceException {
+        return execute("pause") == PlayingState.PAUSED;
+    }
+
+    @Override
+    public boolean resume() throws SourceException {
+        return execute("play") == PlayingState.PLAYING;
+    }
+
+    @Override
+    public void authorize() {}
+
+    @Override
+    public void close() {
+        connection.close();
+        Logging.debug("VLC RC " + connection.getStatistics());
+    }
+
+    @RequiredArgsConstructor
+    private static class Status {
+        private final @Nullable String uri;
+        private final @NotNull PlayingState state;
+
+    }
+
+}
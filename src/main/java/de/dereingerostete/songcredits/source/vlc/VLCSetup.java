@@ -8,8 +8,9 @@
 
 package de.dereingerostete.songcredits.source.vlc;
 
-import org.apache.commons.io.FileUtils;
+import de.dereingerostete.songcredits.util.Logging;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
@@ -17,22 +18,36 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
-import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.nio.file.*;
+import java.util.Arrays;
 
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Validates and configures the web interface in the vlcrc file.
+ * The parsed file is cached and invalidated by a file watcher if the file changes
+ */
 public class VLCSetup {
     private static final @NotNull String INTERFACE = "http";
 
+    //Guarded by VLCSetup.class
+    private static @Nullable VLCProperties cachedProperties;
+    private static @Nullable WatchService watchService;
+    private static @Nullable Path watchedDirectory;
+
     public static boolean isValid(@NotNull VLCConfig config) throws IOException {
         File configFile = config.getConfigFile();
         if (configFile == null) return false;
 
-        VLCProperties properties = new VLCProperties(configFile);
-        String password = properties.getProperty("http-password");
-        String interfaces = properties.getProperty("extraintf");
-
-        int port = properties.getInt("http-port", 8080);
-        String host = properties.getProperty("http-host");
+        String password, interfaces, host;
+        int port;
+        synchronized (VLCSetup.class) {
+            VLCProperties properties = getProperties(configFile);
+            password = properties.getProperty("http-password");
+            interfaces = properties.getProperty("extraintf");
+            port = properties.getInt("http-port", 8080);
+            host = properties.getProperty("http-host");
+        }
 
         boolean validHost = host == null ? isSelf(config) : host.equals(config.getHost());
         return password != null && password.equals(config.getPassword())
@@ -40,39 +55,89 @@ public class VLCSetup {
                 && port == config.getPort() && validHost;
     }
 
-    public static void configureVLC(@NotNull VLCConfig config) throws IOException {
+    //Only the lines of changed properties are replaced
+    public static synchronized void configureVLC(@NotNull VLCConfig config) throws IOException {
         File configFile = config.getConfigFile();
         if (configFile == null) return;
 
-        boolean[] saved = new boolean[4]; //1. Password, 2. Interface, 3. Port 4. Host
-        List<String> lines = FileUtils.readLines(configFile, StandardCharsets.UTF_8);
-        for (int i = 0; i < lines.size(); i++) {
-            String line = lines.get(i);
-
-            if (line.startsWith("http-password=")) {
-                lines.set(i, "http-password=" + config.getPassword());
-                saved[0] = true;
-            } else if (line.startsWith("extraintf=")) {
-                String value = line.split("=", 2)[1];
-                if (value.isEmpty()) value = "http";
-                else if (value.contains("http")) value = value + ":http";
-                lines.set(i, "extraintf=" + value);
-                saved[1] = true;
-            } else if (line.startsWith("http-port=")) {
-                lines.set(i, "http-port=" + config.getPort());
-                saved[2] = true;
-            } else if (line.startsWith("http-host=")) {
-                lines.set(i, "http-host=" + config.getHost());
-                saved[3] = true;
+        VLCProperties properties = getProperties(configFile);
+        String interfaces = properties.getProperty("extraintf", "");
+        if (interfaces.isEmpty()) interfaces = INTERFACE;
+        else if (!Arrays.asList(interfaces.split(":")).contains(INTERFACE)) interfaces = interfaces + ":" + INTERFACE;
+
+        properties.setProperty("http-password", String.valueOf(config.getPassword()));
+        properties.setProperty("extraintf", interfaces);
+        properties.setProperty("http-port", String.valueOf(config.getPort()));
+        properties.setProperty("http-host", String.valueOf(config.getHost()));
+        try {
+            properties.save();
+        } catch (IOException exception) {
+            cachedProperties = null; //The cached properties do not match the file anymore
+            throw exception;
+        }
+    }
+
+    @NotNull
+    private static synchronized VLCProperties getProperties(@NotNull File configFile) throws IOException {
+        VLCProperties properties = cachedProperties;
+        if (properties != null && properties.getFile().equals(configFile)) return properties;
+
+        //The watch is registered before reading, so changes during the read invalidate the cache
+        boolean watched = watch(configFile);
+        properties = new VLCProperties(configFile);
+        if (watched) cachedProperties = properties;
+        return properties;
+    }
+
+    //Watches the directory of the file, the properties are only cached if the file is watched
+    private static boolean watch(@NotNull File file) {
+        Path directory = file.toPath().toAbsolutePath().getParent();
+        if (directory == null) return false;
+        if (directory.equals(watchedDirectory)) return true;
+
+        try {
+            if (watchService == null) {
+                WatchService service = FileSystems.getDefault().newWatchService();
+                Thread thread = new Thread(() -> processEvents(service), "VLCSetup-Watcher");
+                thread.setDaemon(true);
+                thread.start();
+                watchService = service;
+            }
+            directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+            watchedDirectory = directory;
+            return true;
+        } catch (IOException | UnsupportedOperationException exception) {
+            Logging.debug("Failed to watch VLC config directory", exception);
+            return false;
+        }
+    }
+
+    private static void processEvents(@NotNull WatchService service) {
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException exception) {
+                return;
+            }
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                Object context = event.context();
+                if (event.kind() == OVERFLOW) invalidate(null);
+                else if (context instanceof Path) invalidate(((Path) context).getFileName().toString());
             }
+            key.reset();
         }
+    }
 
-        //Check if lines were edited
-        if (!saved[0]) lines.add("http-password=" + config.getPassword());
-        if (!saved[1]) lines.add("extraintf=http");
-        if (!saved[2]) lines.add("http-port=" + config.getPort());
-        if (!saved[3]) lines.add("http-host=" + config.getHost());
-        FileUtils.writeLines(configFile, StandardCharsets.UTF_8.name(), lines, false);
+    //Invalidates the cached properties if the file changed, null for any file
+    private static synchronized void invalidate(@Nullable String fileName) {
+        VLCProperties properties = cachedProperties;
+        if (properties == null) return;
+        if (fileName == null || properties.getFile().getName().equals(fileName)) {
+            cachedProperties = null;
+            Logging.debug("VLC config changed, cached properties were invalidated");
+        }
     }
 
     private static boolean isSelf(@NotNull VLCConfig config) throws UnknownHostException {
@@ -8,57 +8,91 @@
 
 package de.dereingerostete.songcredits.source.vlc;
 
+import de.dereingerostete.songcredits.SongCredits;
+import de.dereingerostete.songcredits.song.ArtworkStore;
 import de.dereingerostete.songcredits.song.Song;
 import de.dereingerostete.songcredits.source.AudioSource;
 import de.dereingerostete.songcredits.source.PlayingState;
 import de.dereingerostete.songcredits.source.SourceException;
 import de.dereingerostete.songcredits.source.SourceType;
+import de.dereingerostete.songcredits.source.manager.ArbitrationPolicy;
+import de.dereingerostete.songcredits.source.manager.CircuitBreaker;
 import de.dereingerostete.songcredits.util.Logging;
 import de.dereingerostete.songcredits.util.Utils;
+import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.json.JSONException;
-import org.json.JSONObject;
 
+import java.io.File;
 import java.io.IOException;
-import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.http.HttpClient;
 import java.nio.charset.StandardCharsets;
-import java.util.Base64;
-import java.util.Objects;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * A source using the web interface of VLC. Multiple instances can be polled
+ * concurrently, the selection policy decides which instance is shown
+ */
 public class VLCSource extends AudioSource {
-    protected final @NotNull String host;
-    protected final @NotNull String authentication;
-    protected final int port;
+    private static final long ENDPOINT_WAIT = 300L; //Time a refresh waits for the instances, in ms
+
+    protected final @NotNull List<VLCEndpoint> endpoints;
+    protected final @NotNull ArbitrationPolicy selectionPolicy;
     protected final boolean resolveCover;
     protected final String coverResolution;
+    protected final @NotNull ArtworkStore artworkStore;
 
-    private Song currentSong;
-    private PlayingState currentState;
-    private int totalLength = -1; //in ms
-    private int currentPosition = -1; //in ms
+    private volatile @NotNull VLCEndpoint selected;
+    private volatile @Nullable Song currentSong;
+    private volatile @Nullable VLCStatus status;
+    private @Nullable String currentSongKey; //Guarded by this
+    private volatile @Nullable Prefetch prefetched;
 
-    @SuppressWarnings("HttpUrlsUsage")
     public VLCSource(@NotNull VLCConfig config) throws SourceException {
         super(SourceType.VLC, config);
-        port = config.getPort();
         resolveCover = config.isResolveCover();
         coverResolution = config.getResolution();
+        selectionPolicy = config.getSelectionPolicy();
+        artworkStore = new ArtworkStore(new File(SongCredits.getDataFolder(), "covers"));
 
         String host = config.getHost();
         if (host == null) throw new SourceException("No host was set");
+
+        //All instances share the connection pool of one http client
+        HttpClient httpClient = VLCClient.newHttpClient(config.getConnectTimeout());
+        List<VLCEndpoint> endpoints = new ArrayList<>();
+        endpoints.add(createEndpoint(httpClient, config, host, config.getPort(), config.getPassword()));
+        for (VLCConfig.Endpoint endpoint : config.getEndpoints()) {
+            String password = endpoint.getPassword();
+            if (password == null) password = config.getPassword();
+            endpoints.add(createEndpoint(httpClient, config, endpoint.getHost(), endpoint.getPort(), password));
+        }
+        this.endpoints = Collections.unmodifiableList(endpoints);
+        this.selected = endpoints.get(0);
+    }
+
+    @SuppressWarnings("HttpUrlsUsage")
+    @NotNull
+    private static VLCEndpoint createEndpoint(@NotNull HttpClient httpClient, @NotNull VLCConfig config,
+                                              @NotNull String host, int port, @Nullable String password) {
         if (!host.startsWith("http")) host = "http://" + host;
         if (host.endsWith("/")) host = host.substring(0, host.length() - 1);
-        this.host = host;
 
-        String password = config.getPassword();
         if (password == null) password = "";
         byte[] bytes = (":" + password).getBytes(StandardCharsets.UTF_8);
         Base64.Encoder encoder = Base64.getEncoder();
-        authentication = "Basic " + encoder.encodeToString(bytes);
+        String authentication = "Basic " + encoder.encodeToString(bytes);
+        VLCClient client = new VLCClient(httpClient, host, port, authentication,
+                config.getReadTimeout(), config.getMaxResponseSize());
+        return new VLCEndpoint(host + ":" + port, client, new CircuitBreaker(SongCredits.getConfig()));
     }
 
     @Nullable
@@ -70,143 +104,298 @@ public class VLCSource extends AudioSource {
     @NotNull
     @Override
     public PlayingState getCurrentState() {
-        return Objects.requireNonNull(currentState, "State is not loaded");
+        VLCStatus status = this.status;
+        return Objects.requireNonNull(status, "State is not loaded").getState();
     }
 
     @Override
     public void refresh() throws SourceException {
-        currentState = getCurrentState(null);
+        if (endpoints.size() == 1) {
+            VLCEndpoint endpoint = endpoints.get(0);
+            applyStatus(endpoint, endpoint.fetchStatus(null));
+            return;
+        }
 
-        try {
-            JSONObject rootObject = doRequest("status.json");
-            retrieveSong(rootObject);
-            retrieveDurationAndLength(rootObject);
-        } catch (IOException exception) {
-            throw new SourceException("Failed to get current song", exception);
+        //Slow instances keep refreshing in the background and are selected by their last status,
+        //so a hanging instance does not delay the others until its circuit breaker opens
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[endpoints.size()];
+        for (int i = 0; i < futures.length; i++) futures[i] = endpoints.get(i).refreshAsync(Utils.getExecutor());
+        CompletableFuture.allOf(futures).completeOnTimeout(null, ENDPOINT_WAIT, TimeUnit.MILLISECONDS).join();
+
+        VLCEndpoint endpoint = selectEndpoint();
+        VLCStatus status = endpoint == null ? null : endpoint.getStatus();
+        if (endpoint == null || status == null) {
+            for (VLCEndpoint failedEndpoint : endpoints) {
+                SourceException failure = failedEndpoint.getLastFailure();
+                if (failure != null) throw failure;
+            }
+            throw new SourceException("No VLC instance is available");
         }
+        applyStatus(endpoint, status);
+    }
+
+    /**
+     * Selects the endpoint to show. Playing endpoints are preferred,
+     * otherwise the selected endpoint is kept while it is available
+     */
+    @Nullable
+    private VLCEndpoint selectEndpoint() {
+        VLCEndpoint best = null;
+        for (VLCEndpoint endpoint : endpoints) {
+            if (!endpoint.isPlaying()) continue;
+            if (best == null) best = endpoint;
+            else if (selectionPolicy == ArbitrationPolicy.RECENT
+                    && endpoint.getLastChange() - best.getLastChange() > 0) best = endpoint;
+        }
+        if (best != null) return best;
+
+        VLCEndpoint current = selected;
+        if (current.isAvailable()) return current;
+        return endpoints.stream().filter(VLCEndpoint::isAvailable).findFirst().orElse(null);
     }
 
     @Override
     public int getCurrentPosition() {
-        return currentPosition;
+        VLCStatus status = this.status;
+        return status == null ? -1 : status.getPosition();
     }
 
     @Override
     public int getCurrentLength() {
-        return totalLength;
+        VLCStatus status = this.status;
+        return status == null ? -1 : status.getLength();
     }
 
-    @NotNull
-    private PlayingState getCurrentState(@Nullable String command) throws SourceException {
-        try {
-            String request = "status.json";
-            if (command != null) request = request + "?command=" + command;
-            JSONObject rootObject = doRequest(request);
-            String state = rootObject.getString("state");
-            return PlayingState.valueOf(state.toUpperCase());
-        } catch (IOException | JSONException exception) {
-            throw new SourceException("Failed to get current state", exception);
-        } catch (IllegalStateException exception) {
-            throw new SourceException("Current state is of unknown type", exception);
-        }
+    @Nullable
+    public VLCStatus getStatus() {
+        return status;
     }
 
-    private void retrieveSong(@NotNull JSONObject rootObject) throws SourceException {
-        try {
-            JSONObject informationObject = rootObject.optJSONObject("information");
-            if (informationObject == null) return; //Remember this wen adding further lines
-
-            JSONObject metaObject = informationObject
-                    .getJSONObject("category")
-                    .getJSONObject("meta");
-            JSONObject lowercaseMetaObject = Utils.formatKeys(metaObject);
-
-            Song song = new Song();
-            for (String key : lowercaseMetaObject.keySet()) {
-                String value = String.valueOf(lowercaseMetaObject.get(key));
-                song.addMetadata(key, value);
+    //Called by refreshes and control commands, which may run on different threads
+    private synchronized void applyStatus(@NotNull VLCEndpoint endpoint, @NotNull VLCStatus status) {
+        if (endpoint != selected) Logging.debug("Switched to VLC instance " + endpoint.getName());
+        selected = endpoint;
+
+        Map<String, String> meta = status.getMeta();
+        if (meta != null) {
+            //Streams keep their playlist id and file but change the now playing value
+            String songKey = endpoint.getName() + "/" + status.getPlaylistId() + "/"
+                    + meta.get("filename") + "/" + meta.get("now_playing");
+            if (!songKey.equals(currentSongKey) || currentSong == null) {
+                retrieveSong(endpoint, status, songKey);
+                currentSongKey = songKey;
+                updateSongIdentity(songKey);
+                prefetchNext(endpoint, status);
             }
+        }
+        this.status = status;
+    }
+
+    //Only called if the song changed, the position and length are read from the status
+    private void retrieveSong(@NotNull VLCEndpoint endpoint, @NotNull VLCStatus status, @NotNull String songKey) {
+        Map<String, String> meta = Objects.requireNonNull(status.getMeta());
+        Song song = new Song();
+        meta.forEach(song::addMetadata);
+
+        //Manual if filename has no underline in meta
+        String fileName = meta.get("filename");
+        if (fileName != null) song.addMetadata(Song.Metadata.FILE_NAME, fileName);
+        currentSong = song;
+
+        //Load Artwork
+        if (!resolveCover) return;
+        Prefetch prefetch = prefetched;
+        if (prefetch != null && prefetch.matches(endpoint, status.getPlaylistId(), song)) addArtwork(song, prefetch.getArtwork());
+        else resolveArtworkAsync(song, endpoint, status.getPlaylistId(), songKey);
+    }
 
-            //Manual if filename has no underline in meta
-            String fileName = lowercaseMetaObject.optString("filename");
-            if (fileName != null) song.addMetadata(Song.Metadata.FILE_NAME, fileName);
-
-            //Load Artwork
-            if (!song.hasMetadata(Song.Metadata.ARTWORK_URL) && resolveCover) {
-                String track = song.getMetadata(Song.Metadata.TITLE);
-                String artists = song.getMetadata(Song.Metadata.ARTIST);
-
-                boolean validate = true;
-                if (track == null || artists == null) {
-                    track = song.getMetadata(Song.Metadata.FILE_NAME);
-                    if (track != null) track = FilenameUtils.getBaseName(fileName);
-                    validate = false;
-                }
-
-                try {
-                    if (track != null) {
-                        URL url = song.resolveArtwork(track, artists, coverResolution, validate);
-                        String rawUrl = url.toString();
-                        song.addMetadata(Song.Metadata.COVER, rawUrl);
-                        song.addMetadata(Song.Metadata.ARTWORK_URL, rawUrl);
-                    }
-                } catch (IOException exception) {
-                    Logging.warning("Failed to resolve artwork of song", exception);
-                }
+    /**
+     * Resolves the artwork in the background, so the refresh does not wait for it.
+     * The song is published without a cover first and replaced by a copy with the cover
+     */
+    private void resolveArtworkAsync(@NotNull Song song, @NotNull VLCEndpoint endpoint,
+                                     int playlistId, @NotNull String songKey) {
+        Utils.runAsync(() -> {
+            URL url = resolveArtwork(song, endpoint, playlistId);
+            if (url == null) return;
+
+            synchronized (this) {
+                if (!songKey.equals(currentSongKey)) return; //The song changed in the meantime
+                Song resolvedSong = new Song(song);
+                addArtwork(resolvedSong, url);
+                currentSong = resolvedSong;
+                updateArtwork();
             }
-            currentSong = song;
-        } catch (JSONException exception) {
-            throw new SourceException("Failed to get current song", exception);
+            notifyUpdate();
+        });
+    }
+
+    private void addArtwork(@NotNull Song song, @NotNull URL url) {
+        String rawUrl = url.toString();
+        song.addMetadata(Song.Metadata.COVER, rawUrl);
+        if (!song.hasMetadata(Song.Metadata.ARTWORK_URL)) song.addMetadata(Song.Metadata.ARTWORK_URL, rawUrl);
+    }
+
+    //The artwork embedded in the file is preferred, iTunes is only searched if there is none
+    @Nullable
+    private URL resolveArtwork(@NotNull Song song, @NotNull VLCEndpoint endpoint, int playlistId) {
+        URL localUrl = fetchLocalArtwork(endpoint, playlistId);
+        if (localUrl != null || song.hasMetadata(Song.Metadata.ARTWORK_URL)) return localUrl;
+
+        ArtworkSearch search = ArtworkSearch.of(song);
+        try {
+            if (search != null) return search.resolve(song, coverResolution);
+        } catch (IOException exception) {
+            Logging.warning("Failed to resolve artwork of song", exception);
         }
+        return null;
     }
 
-    private void retrieveDurationAndLength(@NotNull JSONObject rootObject) throws SourceException {
+    //Fetches the artwork from the web interface, null if the item has no artwork
+    @Nullable
+    private URL fetchLocalArtwork(@NotNull VLCEndpoint endpoint, int playlistId) {
         try {
-            totalLength = rootObject.getInt("length") * 1000;
-            currentPosition = (int) (rootObject.getDouble("position") * totalLength);
-        } catch (JSONException exception) {
-            throw new SourceException("Failed to get duration and length", exception);
+            byte[] bytes = endpoint.getClient().getBytes(playlistId >= 0 ? "art?item=" + playlistId : "art");
+            if (bytes == null || bytes.length == 0) return null;
+            return artworkStore.store(bytes);
+        } catch (IOException exception) {
+            Logging.debug("Failed to fetch artwork from VLC", exception);
+            return null;
         }
     }
 
+    //Resolves the next playlist item in the background, so the song change does not wait for it
+    private void prefetchNext(@NotNull VLCEndpoint endpoint, @NotNull VLCStatus status) {
+        int playlistId = status.getPlaylistId();
+        if (!resolveCover || playlistId < 0 || status.isRandom() || status.isRepeat()) return;
+
+        Utils.runAsync(() -> {
+            try {
+                VLCPlaylist playlist = VLCPlaylist.parse(endpoint.getClient().get("playlist.json"));
+                VLCPlaylist.Item item = playlist.findNext(playlistId, status.isLoop());
+                Prefetch current = prefetched;
+                if (item == null || (current != null && current.getEndpoint() == endpoint
+                        && current.getItem().getId() == item.getId())) return;
+
+                Prefetch prefetch = prefetchArtwork(endpoint, item);
+                if (prefetch == null) return;
+                prefetched = prefetch;
+                Logging.debug("Prefetched next VLC item '" + item.getName() + "'");
+            } catch (IOException | SourceException exception) {
+                Logging.debug("Failed to prefetch next VLC item", exception);
+            }
+        });
+    }
+
+    /**
+     * The playlist only contains the name of an item, which is the title or the file name.
+     * The artist is unknown, so the search is the same as the one of a song without artist.
+     * If the song turns out to have an artist, the prefetched artwork is not used
+     */
+    @Nullable
+    private Prefetch prefetchArtwork(@NotNull VLCEndpoint endpoint, @NotNull VLCPlaylist.Item item) throws IOException {
+        URL localUrl = fetchLocalArtwork(endpoint, item.getId());
+        if (localUrl != null) return new Prefetch(endpoint, item, localUrl, null);
+
+        String name = item.getName();
+        String fileName = null;
+        try {
+            String uri = item.getUri();
+            String path = uri == null ? null : new URI(uri).getPath();
+            if (path != null) fileName = FilenameUtils.getName(path);
+        } catch (URISyntaxException ignored) {}
+
+        Song song = new Song();
+        if (!name.isEmpty() && !name.equals(fileName)) song.addMetadata(Song.Metadata.TITLE, name);
+        if (fileName != null) song.addMetadata(Song.Metadata.FILE_NAME, fileName);
+
+        ArtworkSearch search = ArtworkSearch.of(song);
+        if (search == null) return null;
+        return new Prefetch(endpoint, item, search.resolve(song, coverResolution), search);
+    }
+
+    //Commands are sent to the selected instance, the returned status is used as the latest status
     @Override
     public boolean nextSong() throws SourceException {
-        return getCurrentState("pl_next") == PlayingState.PLAYING;
+        VLCEndpoint endpoint = selected;
+        VLCStatus status = endpoint.fetchStatus("pl_next");
+        applyStatus(endpoint, status);
+        return status.getState() == PlayingState.PLAYING;
     }
 
     @Override
     public boolean previousSong() throws SourceException {
-        return getCurrentState("pl_previous") == PlayingState.PLAYING;
+        VLCEndpoint endpoint = selected;
+        VLCStatus status = endpoint.fetchStatus("pl_previous");
+        applyStatus(endpoint, status);
+        return status.getState() == PlayingState.PLAYING;
     }
 
     @Override
     public boolean pause() throws SourceException {
-        return getCurrentState("pl_pause") == PlayingState.PAUSED;
+        VLCEndpoint endpoint = selected;
+        VLCStatus status = endpoint.fetchStatus("pl_pause");
+        applyStatus(endpoint, status);
+        return status.getState() == PlayingState.PAUSED;
     }
 
     @Override
     public boolean resume() throws SourceException {
-        return getCurrentState("pl_forceresume") == PlayingState.PLAYING;
+        VLCEndpoint endpoint = selected;
+        VLCStatus status = endpoint.fetchStatus("pl_forceresume");
+        applyStatus(endpoint, status);
+        return status.getState() == PlayingState.PLAYING;
     }
 
     @Override
     public void authorize() {}
 
     @Override
-    public void close() {}
+    public void close() {
+        for (VLCEndpoint endpoint : endpoints)
+            Logging.debug("VLC " + endpoint.getName() + " " + endpoint.getClient().getStatistics());
+    }
 
-    @NotNull
-    private JSONObject doRequest(@NotNull String request) throws IOException {
-        URL url = new URL(host + ":" + port + "/requests/" + request);
-        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-        connection.setRequestProperty("Authorization", authentication);
+    @Getter
+    @RequiredArgsConstructor
+    private static class Prefetch {
+        private final @NotNull VLCEndpoint endpoint;
+        private final @NotNull VLCPlaylist.Item item;
+        private final @NotNull URL artwork;
+        private final @Nullable ArtworkSearch search; //Null if the artwork was served by VLC
+
+        //The iTunes artwork is only used if the song is searched the same way
+        public boolean matches(@NotNull VLCEndpoint endpoint, int playlistId, @NotNull Song song) {
+            if (this.endpoint != endpoint || item.getId() != playlistId) return false;
+            if (search == null) return true;
+            return !song.hasMetadata(Song.Metadata.ARTWORK_URL) && search.equals(ArtworkSearch.of(song));
+        }
 
-        try {
-            String response = IOUtils.toString(connection.getInputStream(), StandardCharsets.UTF_8);
-            return new JSONObject(response);
-        } catch (JSONException exception) {
-            throw new IOException(exception);
+    }
+
+    //The iTunes search of a song, so the prefetch and the refresh search the same term
+    @Data
+    private static class ArtworkSearch {
+        private final @NotNull String track;
+        private final @Nullable String artist;
+        private final boolean validate;
+
+        //Searches title and artist, or the file name if one of them is missing
+        @Nullable
+        public static ArtworkSearch of(@NotNull Song song) {
+            String track = song.getMetadata(Song.Metadata.TITLE);
+            String artist = song.getMetadata(Song.Metadata.ARTIST);
+            if (track != null && artist != null) return new ArtworkSearch(track, artist, true);
+
+            String fileName = song.getMetadata(Song.Metadata.FILE_NAME);
+            return fileName == null ? null : new ArtworkSearch(FilenameUtils.getBaseName(fileName), null, false);
         }
+
+        @NotNull
+        public URL resolve(@NotNull Song song, String resolution) throws IOException {
+            return song.resolveArtwork(track, artist, resolution, validate);
+        }
+
     }
 
 }
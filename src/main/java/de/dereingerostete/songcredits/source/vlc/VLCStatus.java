@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.source.vlc;
+
+import de.dereingerostete.songcredits.source.PlayingState;
+import de.dereingerostete.songcredits.source.SourceException;
+import de.dereingerostete.songcredits.util.JsonPullReader;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of a single status.json response of VLC
+ */
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class VLCStatus {
+    private final @NotNull PlayingState state;
+    private final int length; //in ms
+    private final int position; //in ms
+    private final int playlistId; //-1 if nothing is playing
+    private final boolean loop;
+    private final boolean repeat;
+    private final boolean random;
+    private final @Nullable Map<String, String> meta; //Lowercase keys, null if nothing is playing
+
+    /**
+     * Reads only the needed values of the status and skips everything else
+     * (e.g. the equalizer, statistics and stream information)
+     */
+    @NotNull
+    public static VLCStatus parse(@NotNull String response) throws SourceException {
+        try {
+            JsonPullReader reader = new JsonPullReader(response);
+            String stateValue = null;
+            int length = -1;
+            double position = 0D;
+            int playlistId = -1;
+            boolean loop = false, repeat = false, random = false;
+            Map<String, String> meta = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonPullReader.Token.NULL) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                switch (name) {
+                    case "state":
+                        stateValue = reader.nextString();
+                        break;
+                    case "length":
+                        length = reader.nextInt();
+                        break;
+                    case "position":
+                        position = reader.nextDouble();
+                        break;
+                    case "currentplid":
+                        playlistId = reader.nextInt();
+                        break;
+                    case "loop":
+                        loop = reader.nextBoolean();
+                        break;
+                    case "repeat":
+                        repeat = reader.nextBoolean();
+                        break;
+                    case "random":
+                        random = reader.nextBoolean();
+                        break;
+                    case "information":
+                        meta = readMeta(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+
+            if (stateValue == null) throw new SourceException("Status is missing the state");
+            PlayingState state = PlayingState.valueOf(stateValue.toUpperCase());
+            length = length * 1000;
+            return new VLCStatus(state, length, (int) (position * length), playlistId, loop, repeat, random, meta);
+        } catch (JSONException exception) {
+            throw new SourceException("Failed to parse status", exception);
+        } catch (IllegalArgumentException exception) {
+            throw new SourceException("Current state is of unknown type", exception);
+        }
+    }
+
+    //Reads information.category.meta
+    @Nullable
+    private static Map<String, String> readMeta(@NotNull JsonPullReader reader) {
+        Map<String, String> meta = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (!reader.nextName().equals("category") || reader.peek() != JsonPullReader.Token.OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("meta") || reader.peek() != JsonPullReader.Token.OBJECT) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                Map<String, String> map = new HashMap<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String key = reader.nextName().toLowerCase();
+                    String value = reader.nextValueAsString();
+                    if (value != null) map.put(key, value);
+                }
+                reader.endObject();
+                meta = Collections.unmodifiableMap(map);
+            }
+            reader.endObject();
+        }
+        reader.endObject();
+        return meta;
+    }
+
+    @Nullable
+    public String getMetaValue(@NotNull String key) {
+        return meta == null ? null : meta.get(key);
+    }
+
+}
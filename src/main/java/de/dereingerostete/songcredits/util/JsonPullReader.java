@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONException;
+
+/**
+ * A minimal pull parser for JSON text.
+ * Values are read one after another without building a tree,
+ * so unused values can be skipped without allocating anything
+ */
+public class JsonPullReader {
+    protected final @NotNull String text;
+    protected int index;
+
+    public JsonPullReader(@NotNull String text) {
+        this.text = text;
+    }
+
+    public void beginObject() {
+        expect('{');
+    }
+
+    public void endObject() {
+        expect('}');
+    }
+
+    public void beginArray() {
+        expect('[');
+    }
+
+    public void endArray() {
+        expect(']');
+    }
+
+    //Also consumes the comma between two entries
+    public boolean hasNext() {
+        char next = peekChar();
+        if (next == ',') {
+            index++;
+            next = peekChar();
+        }
+        return next != '}' && next != ']';
+    }
+
+    @NotNull
+    public String nextName() {
+        String name = nextString();
+        expect(':');
+        return name;
+    }
+
+    @NotNull
+    public Token peek() {
+        char next = peekChar();
+        switch (next) {
+            case '{':
+                return Token.OBJECT;
+            case '[':
+                return Token.ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+            case 'f':
+                return Token.BOOLEAN;
+            case 'n':
+                return Token.NULL;
+            default:
+                return Token.NUMBER;
+        }
+    }
+
+    @NotNull
+    public String nextString() {
+        expect('"');
+        int start = index;
+        StringBuilder builder = null;
+        while (index < text.length()) {
+            char current = text.charAt(index++);
+            if (current == '"') {
+                if (builder == null) return text.substring(start, index - 1);
+                return builder.toString();
+            } else if (current == '\\') {
+                if (builder == null) builder = new StringBuilder(text.substring(start, index - 1));
+                builder.append(readEscaped());
+            } else if (builder != null) builder.append(current);
+        }
+        throw error("Unterminated string");
+    }
+
+    public double nextDouble() {
+        int start = index;
+        skipNumber();
+        try {
+            return Double.parseDouble(text.substring(start, index));
+        } catch (NumberFormatException exception) {
+            index = start;
+            throw error("Expected a number");
+        }
+    }
+
+    public long nextLong() {
+        skipWhitespace();
+        int start = index;
+        boolean negative = start < text.length() && text.charAt(start) == '-';
+        if (negative) index++;
+
+        long value = 0L;
+        while (index < text.length()) {
+            char current = text.charAt(index);
+            if (current < '0' || current > '9') break;
+            value = value * 10 + (current - '0');
+            index++;
+        }
+
+        //Fractions and exponents are rare, so they use the slow path
+        if (index < text.length() && isNumberChar(text.charAt(index))) {
+            index = start;
+            return (long) nextDouble();
+        } else if (index == start || (negative && index == start + 1)) throw error("Expected a number");
+        return negative ? -value : value;
+    }
+
+    public int nextInt() {
+        return (int) nextLong();
+    }
+
+    public boolean nextBoolean() {
+        if (consumeLiteral("true")) return true;
+        if (consumeLiteral("false")) return false;
+        throw error("Expected a boolean");
+    }
+
+    public void nextNull() {
+        if (!consumeLiteral("null")) throw error("Expected null");
+    }
+
+    /**
+     * @return The value as string or null if the value is null, an object or an array
+     */
+    @Nullable
+    public String nextValueAsString() {
+        switch (peek()) {
+            case STRING:
+                return nextString();
+            case BOOLEAN:
+                return String.valueOf(nextBoolean());
+            case NUMBER:
+                int start = index;
+                skipNumber();
+                return text.substring(start, index);
+            default:
+                skipValue();
+                return null;
+        }
+    }
+
+    public void skipValue() {
+        switch (peek()) {
+            case OBJECT:
+                beginObject();
+                while (hasNext()) {
+                    nextName();
+                    skipValue();
+                }
+                endObject();
+                break;
+            case ARRAY:
+                beginArray();
+                while (hasNext()) skipValue();
+                endArray();
+                break;
+            case STRING:
+                skipString();
+                break;
+            case BOOLEAN:
+                nextBoolean();
+                break;
+            case NULL:
+                nextNull();
+                break;
+            default:
+                skipNumber();
+        }
+    }
+
+    private void skipString() {
+        expect('"');
+        while (index < text.length()) {
+            char current = text.charAt(index++);
+            if (current == '"') return;
+            if (current == '\\') index++;
+        }
+        throw error("Unterminated string");
+    }
+
+    private void skipNumber() {
+        skipWhitespace();
+        int start = index;
+        while (index < text.length() && isNumberChar(text.charAt(index))) index++;
+        if (start == index) throw error("Expected a number");
+    }
+
+    private boolean isNumberChar(char character) {
+        return (character >= '0' && character <= '9') || character == '-' || character == '+'
+                || character == '.' || character == 'e' || character == 'E';
+    }
+
+    private char readEscaped() {
+        if (index >= text.length()) throw error("Unterminated escape sequence");
+        char escaped = text.charAt(index++);
+        switch (escaped) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                if (index + 4 > text.length()) throw error("Invalid unicode escape");
+                try {
+                    char character = (char) Integer.parseInt(text, index, index + 4, 16);
+                    index += 4;
+                    return character;
+                } catch (NumberFormatException exception) {
+                    throw error("Invalid unicode escape");
+                }
+            default:
+                return escaped;
+        }
+    }
+
+    private boolean consumeLiteral(@NotNull String literal) {
+        skipWhitespace();
+        if (!text.startsWith(literal, index)) return false;
+        index += literal.length();
+        return true;
+    }
+
+    private void expect(char expected) {
+        if (peekChar() != expected) throw error("Expected '" + expected + "'");
+        index++;
+    }
+
+    private char peekChar() {
+        skipWhitespace();
+        if (index >= text.length()) throw error("Unexpected end of input");
+        return text.charAt(index);
+    }
+
+    private void skipWhitespace() {
+        while (index < text.length() && Character.isWhitespace(text.charAt(index))) index++;
+    }
+
+    @NotNull
+    private JSONException error(@NotNull String message) {
+        return new JSONException(message + " at index " + index);
+    }
+
+    public enum Token {
+        OBJECT,
+        ARRAY,
+        STRING,
+        NUMBER,
+        BOOLEAN,
+        NULL
+    }
+
+}
@@ -0,0 +1,15 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.util;
+
+public enum RejectionPolicy {
+    CALLER_RUNS, //Runs the task on the thread that submitted it
+    DISCARD, //Drops the task, logs it and throws a RejectedExecutionException
+    ABORT //Throws a RejectedExecutionException
+}
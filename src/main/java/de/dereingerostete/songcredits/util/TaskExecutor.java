@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2022 DerEingerostete
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0. If a copy of the MPL was not distributed with this
+ * file, You can obtain one at http://mozilla.org/MPL/2.0/
+ */
+
+package de.dereingerostete.songcredits.util;
+
+import lombok.Getter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A named and bounded executor for background tasks.
+ * At most maxThreads tasks run at the same time and at most queueCapacity
+ * tasks wait for execution, further tasks are handled by the rejection policy.
+ * Uses virtual threads if running on Java 21 or newer
+ */
+public class TaskExecutor implements Executor {
+    protected final @Getter @NotNull String name;
+    protected final @Getter int maxThreads;
+    protected final @Getter int queueCapacity;
+    protected final @Getter @NotNull RejectionPolicy rejectionPolicy;
+    protected final @Getter boolean virtual;
+    protected final @NotNull ExecutorService service;
+    protected final @Nullable Semaphore permits; //Only used for virtual threads
+
+    //Statistics
+    protected final AtomicInteger queued = new AtomicInteger();
+    protected final AtomicInteger active = new AtomicInteger();
+    protected final AtomicLong submitted = new AtomicLong();
+    protected final AtomicLong completed = new AtomicLong();
+    protected final AtomicLong rejected = new AtomicLong();
+    protected final AtomicLong totalWaitNanos = new AtomicLong();
+    protected final AtomicLong maxWaitNanos = new AtomicLong();
+    protected final AtomicLong totalRunNanos = new AtomicLong();
+
+    public TaskExecutor(@NotNull String name, int maxThreads, int queueCapacity,
+                        @NotNull RejectionPolicy rejectionPolicy, boolean useVirtualThreads) {
+        this.name = name;
+        this.maxThreads = Math.max(maxThreads, 1);
+        this.queueCapacity = Math.max(queueCapacity, 1);
+        this.rejectionPolicy = rejectionPolicy;
+
+        ExecutorService virtualService = useVirtualThreads ? createVirtualService(name) : null;
+        this.virtual = virtualService != null;
+        if (virtualService != null) {
+            this.service = virtualService;
+            this.permits = new Semaphore(this.maxThreads);
+        } else {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(this.maxThreads, this.maxThreads,
+                    60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(this.queueCapacity),
+                    createThreadFactory(name), (runnable, pool) -> reject((InstrumentedTask) runnable));
+            executor.allowCoreThreadTimeOut(true);
+            this.service = executor;
+            this.permits = null;
+        }
+    }
+
+    @NotNull
+    public static TaskExecutor fromConfig(@NotNull String name, @Nullable Config config) {
+        if (config == null) return new TaskExecutor(name, 8, 256, RejectionPolicy.CALLER_RUNS, true);
+        int maxThreads = config.getInt("executorThreads", 8);
+        int queueCapacity = config.getInt("executorQueueSize", 256);
+        RejectionPolicy policy = config.getEnum("executorRejectionPolicy",
+                RejectionPolicy.CALLER_RUNS, RejectionPolicy.class);
+        boolean virtualThreads = config.getBoolean("virtualThreads", true);
+        return new TaskExecutor(name, maxThreads, queueCapacity, policy, virtualThreads);
+    }
+
+    @Override
+    public void execute(@NotNull Runnable runnable) {
+        submitted.incrementAndGet();
+        queued.incrementAndGet();
+        InstrumentedTask task = new InstrumentedTask(runnable, System.nanoTime());
+        if (permits == null) {
+            service.execute(task);
+            return;
+        }
+
+        //Tasks which can start directly are not counted as queued
+        if (queued.get() > queueCapacity + permits.availablePermits()) {
+            reject(task);
+            return;
+        }
+
+        try {
+            service.execute(() -> {
+                try {
+                    permits.acquire();
+                } catch (InterruptedException exception) {
+                    queued.decrementAndGet();
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            throw exception;
+        }
+    }
+
+    protected void reject(@NotNull InstrumentedTask task) {
+        switch (rejectionPolicy) {
+            case CALLER_RUNS:
+                if (service.isShutdown()) break;
+                task.run();
+                return;
+            case DISCARD:
+                Logging.debug("[" + name + "] Discarded task. Queue is full (" + getStatistics() + ")");
+                break;
+        }
+
+        //Discarded tasks are reported as well, otherwise futures waiting for them never complete
+        queued.decrementAndGet();
+        rejected.incrementAndGet();
+        throw new RejectedExecutionException("Executor '" + name + "' rejected task");
+    }
+
+    public int getQueueDepth() {
+        return queued.get();
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    //Time between submitting and starting a task
+    public double getAverageWaitMillis() {
+        long count = completed.get();
+        return count == 0 ? 0D : totalWaitNanos.get() / (count * 1_000_000D);
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000D;
+    }
+
+    public double getAverageRunMillis() {
+        long count = completed.get();
+        return count == 0 ? 0D : totalRunNanos.get() / (count * 1_000_000D);
+    }
+
+    @NotNull
+    public String getStatistics() {
+        return String.format("queued: %d, active: %d, completed: %d, rejected: %d, " +
+                        "avg. wait: %.2fms, max. wait: %.2fms, avg. run: %.2fms",
+                getQueueDepth(), getActiveCount(), getCompletedCount(), getRejectedCount(),
+                getAverageWaitMillis(), getMaxWaitMillis(), getAverageRunMillis());
+    }
+
+    public void shutdown() {
+        service.shutdown();
+    }
+
+    @NotNull
+    private static ThreadFactory createThreadFactory(@NotNull String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    //Compiled for Java 11, so the virtual thread API has to be accessed reflectively
+    @Nullable
+    private static ExecutorService createVirtualService(@NotNull String name) {
+        if (Runtime.version().feature() < 21) return null;
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+            Method method = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) method.invoke(null, factory);
+        } catch (ReflectiveOperationException | ClassCastException exception) {
+            Logging.warning("Failed to create virtual thread executor. Using platform threads", exception);
+            return null;
+        }
+    }
+
+    protected class InstrumentedTask implements Runnable {
+        protected final @NotNull Runnable runnable;
+        protected final long submitTime;
+
+        public InstrumentedTask(@NotNull Runnable runnable, long submitTime) {
+            this.runnable = runnable;
+            this.submitTime = submitTime;
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.nanoTime();
+            long waitTime = startTime - submitTime;
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            totalWaitNanos.addAndGet(waitTime);
+            maxWaitNanos.accumulateAndGet(waitTime, Math::max);
+
+            try {
+                runnable.run();
+            } catch (Throwable throwable) {
+                Logging.warning("[" + name + "] Task threw an exception", throwable);
+            } finally {
+                active.decrementAndGet();
+                completed.incrementAndGet();
+                totalRunNanos.addAndGet(System.nanoTime() - startTime);
+            }
+        }
+
+    }
+
+}
@@ -8,18 +8,18 @@
 
 package de.dereingerostete.songcredits.util;
 
+import de.dereingerostete.songcredits.SongCredits;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.json.JSONObject;
 
 import java.util.Timer;
 import java.util.TimerTask;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 public class Utils {
     private static final Timer TIMER = new Timer("SongCredits-Utils");
-    private static final ExecutorService SERVICE = Executors.newCachedThreadPool();
+    private static volatile TaskExecutor executor;
 
     @NotNull
     public static String toString(Object @NotNull [] array, String connector) {
@@ -57,19 +57,42 @@ public class Utils {
         return message == null ? "Unknown" : message;
     }
 
-    public static void runLater(@NotNull Runnable runnable, long delay) {
-        TIMER.schedule(new TimerTask() {
+    @NotNull //The returned task can be used to cancel the execution
+    public static TimerTask runLater(@NotNull Runnable runnable, long delay) {
+        TimerTask task = new TimerTask() {
 
             @Override
             public void run() {
                 runnable.run();
             }
 
-        }, delay);
+        };
+        TIMER.schedule(task, delay);
+        return task;
     }
 
+    //Nothing waits for the task, so a rejected task is only logged
     public static void runAsync(@NotNull Runnable runnable) {
-        SERVICE.execute(runnable);
+        try {
+            getExecutor().execute(runnable);
+        } catch (RejectedExecutionException exception) {
+            Logging.warning("Failed to run task in the background", exception);
+        }
+    }
+
+    @NotNull //Created lazily, as the config is not loaded when this class is initialized
+    public static TaskExecutor getExecutor() {
+        TaskExecutor current = executor;
+        if (current != null) return current;
+
+        synchronized (Utils.class) {
+            if (executor == null) {
+                executor = TaskExecutor.fromConfig("SongCredits-Async", SongCredits.getConfig());
+                Logging.debug("Created async executor with " + executor.getMaxThreads() + " threads" +
+                        " (Virtual: " + executor.isVirtual() + ")");
+            }
+            return executor;
+        }
     }
 
 }